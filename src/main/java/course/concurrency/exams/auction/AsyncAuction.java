@@ -0,0 +1,133 @@
+package course.concurrency.exams.auction;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking facade of an auction: proposals are queued and applied to the delegate by a single writer.
+ * <p>
+ * Producers append to a lock-free queue and never wait for a lock. The first producer which finds
+ * the writer idle submits it to the executor, the writer drains the queue in batches and proposes
+ * only the best bid of every batch to the delegate, the other bids of the batch are rejected at once.
+ * As the delegate has just one writer, even {@link AuctionPessimistic} never parks on its lock,
+ * and {@link AuctionStoppable#stopAuction()} contends with one thread at most.
+ * <p>
+ * A rejected bid of the batch could have been accepted and outbid at once if proposed synchronously,
+ * its participant gets {@code false} instead of an outdated message. The stage is completed
+ * on the writer thread, use async methods of {@link CompletionStage} for slow actions.
+ * <p>
+ * If the executor rejects the writer, the queued proposals fail with the rejection
+ * and the next proposal submits the writer again.
+ */
+public class AsyncAuction {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final Auction delegate;
+    private final Executor executor;
+    private final int maxBatchSize;
+
+    private final Queue<Proposal> proposals = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger(); // writer is scheduled or running while not 0
+
+    public AsyncAuction(Auction delegate) {
+        this(delegate, ForkJoinPool.commonPool(), DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public AsyncAuction(Auction delegate, Executor executor, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Illegal max batch size: " + maxBatchSize);
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public CompletionStage<Boolean> proposeAsync(Bid bid) {
+        Proposal proposal = new Proposal(bid);
+        proposals.offer(proposal);
+        if (wip.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                failQueued(e);
+            }
+        }
+        return proposal;
+    }
+
+    /**
+     * Latest bid of the delegate, proposals still in the queue are not taken into account.
+     */
+    public Bid getLatestBid() {
+        return delegate.getLatestBid();
+    }
+
+    public Auction getDelegate() {
+        return delegate;
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            Proposal best = null;
+            int batchSize = 0;
+            Proposal proposal;
+            while ((proposal = proposals.poll()) != null) {
+                if (best == null || proposal.bid.getPrice() > best.bid.getPrice()) {
+                    if (best != null) {
+                        best.complete(false);
+                    }
+                    best = proposal;
+                } else {
+                    proposal.complete(false);
+                }
+                if (++batchSize == maxBatchSize) {
+                    apply(best);
+                    best = null;
+                    batchSize = 0;
+                }
+            }
+            apply(best);
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    // the caller holds the writer's turn, so no proposal is applied meanwhile
+    private void failQueued(RejectedExecutionException e) {
+        int missed = 1;
+        do {
+            Proposal proposal;
+            while ((proposal = proposals.poll()) != null) {
+                proposal.completeExceptionally(e);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void apply(Proposal best) {
+        if (best == null) {
+            return;
+        }
+        try {
+            best.complete(delegate.propose(best.bid));
+        } catch (RuntimeException e) {
+            best.completeExceptionally(e);
+        }
+    }
+
+    // the future itself is queued, no separate request object
+    private static final class Proposal extends CompletableFuture<Boolean> {
+        private final Bid bid;
+
+        private Proposal(Bid bid) {
+            this.bid = bid;
+        }
+    }
+}
@@ -5,4 +5,16 @@ public interface Auction {
     boolean propose(Bid bid);
 
     Bid getLatestBid();
+
+    /**
+     * Returns the latest bid with its version, or null if the version is still {@code sinceVersion}.
+     * Version of the initial state is 0.
+     * <p>
+     * Accepted bid always has a higher price than the previous one,
+     * so the price of the latest bid serves as its version.
+     */
+    default BidSnapshot getLatestBidIfChanged(long sinceVersion) {
+        Bid latest = getLatestBid();
+        return latest.getPrice() == sinceVersion ? null : new BidSnapshot(latest, latest.getPrice());
+    }
 }
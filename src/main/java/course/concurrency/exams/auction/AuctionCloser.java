@@ -0,0 +1,261 @@
+package course.concurrency.exams.auction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Closes stoppable auctions at their deadlines from a single thread using a hashed timing wheel.
+ * <p>
+ * The wheel is an array of buckets, each tick the worker thread stops every auction of the current bucket
+ * whose deadline has come and hands its winner to the {@link ClosedListener}. An auction further than one
+ * wheel turn away stays in its bucket and is only counted down once per turn, so a tick costs as much as
+ * the bucket it processes, no matter how many lots are scheduled in total.
+ * <p>
+ * Scheduling neither locks nor allocates anything but the {@link Timeout} itself: timeouts are pushed
+ * to a lock-free stack which the worker moves to the buckets at the start of every tick.
+ * An auction is closed no earlier than its deadline and at most one tick plus the scheduling delay
+ * of the worker later, see {@link #getLatenessMicros()}.
+ */
+public class AuctionCloser {
+
+    public interface ClosedListener {
+        // called from the closer thread, should not block
+        void onClosed(long lotId, Bid winner);
+    }
+
+    private static final long DEFAULT_TICK_MILLIS = 1L;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final ClosedListener listener;
+    private final long tickNanos;
+    private final Timeout[] wheel; // bucket heads, accessed by the worker only
+    private final int mask;
+    private final long startNanos;
+
+    private final AtomicReference<Timeout> scheduled = new AtomicReference<>();
+    private long tick = 0; // accessed by the worker only
+
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LongAdder scheduledCount = new LongAdder();
+    private final LongAdder closedCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder closeFailures = new LongAdder();
+    private final Histogram latenessMicros = new Histogram();
+
+    public AuctionCloser(ClosedListener listener) {
+        this(listener, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    public AuctionCloser(ClosedListener listener, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal closer config: tickMillis=%d, wheelSize=%d", tickMillis, wheelSize));
+        }
+        this.listener = listener;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(wheelSize) == wheelSize ? wheelSize : Integer.highestOneBit(wheelSize) << 1;
+        this.wheel = new Timeout[size];
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+
+        worker = new Thread(this::processTicks);
+        worker.setName("AuctionCloser_Wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops the auction after the given delay unless the returned timeout is cancelled before.
+     */
+    public Timeout schedule(long lotId, AuctionStoppable auction, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Auction closer is shut down");
+        }
+        Timeout timeout = new Timeout(this, lotId, auction, System.nanoTime() + unit.toNanos(delay));
+        Timeout head;
+        do {
+            head = scheduled.get();
+            timeout.next = head;
+        } while (!scheduled.compareAndSet(head, timeout));
+        scheduledCount.increment();
+        return timeout;
+    }
+
+    private void processTicks() {
+        while (running) {
+            if (!awaitTick(startNanos + (tick + 1) * tickNanos)) {
+                return;
+            }
+            transferScheduled();
+            expire((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    private boolean awaitTick(long tickDeadline) {
+        for (long left = tickDeadline - System.nanoTime(); left > 0; left = tickDeadline - System.nanoTime()) {
+            LockSupport.parkNanos(this, left);
+            if (!running) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void transferScheduled() {
+        Timeout timeout = scheduled.getAndSet(null);
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.isCancelled()) {
+                timeout.next = null;
+            } else {
+                long ticks = (timeout.deadline - startNanos) / tickNanos;
+                timeout.remainingRounds = (ticks - tick) / wheel.length;
+                int bucket = (int) (Math.max(ticks, tick) & mask); // overdue goes to the current tick
+                timeout.next = wheel[bucket];
+                wheel[bucket] = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    private void expire(int bucket) {
+        Timeout remaining = null;
+        Timeout timeout = wheel[bucket];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            if (timeout.remainingRounds > 0 && !timeout.isCancelled()) {
+                timeout.remainingRounds--;
+                timeout.next = remaining;
+                remaining = timeout;
+            } else if (timeout.compareAndSetState(Timeout.PENDING, Timeout.CLOSED)) {
+                close(timeout);
+            }
+            timeout = next;
+        }
+        wheel[bucket] = remaining;
+    }
+
+    // a failing auction or listener must not kill the worker, the lot is counted as closed anyway
+    private void close(Timeout timeout) {
+        closedCount.increment();
+        try {
+            Bid winner = timeout.auction.stopAuction();
+            long lateness = System.nanoTime() - timeout.deadline;
+            latenessMicros.record(TimeUnit.NANOSECONDS.toMicros(Math.max(lateness, 0)));
+            listener.onClosed(timeout.lotId, winner);
+        } catch (RuntimeException e) {
+            closeFailures.increment();
+        }
+    }
+
+    /**
+     * Stops the wheel, auctions which are not closed yet stay open.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        worker.join(unit.toMillis(timeout));
+        return !worker.isAlive();
+    }
+
+    public long getScheduledCount() {
+        return scheduledCount.sum();
+    }
+
+    public long getClosedCount() {
+        return closedCount.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    public long getPendingCount() {
+        return scheduledCount.sum() - closedCount.sum() - cancelledCount.sum();
+    }
+
+    /**
+     * Closed lots whose auction failed to stop or whose listener failed.
+     */
+    public long getCloseFailureCount() {
+        return closeFailures.sum();
+    }
+
+    /**
+     * Time between the deadline and the actual close of every closed auction.
+     */
+    public Histogram getLatenessMicros() {
+        return latenessMicros;
+    }
+
+    public static final class Timeout {
+
+        private static final VarHandle STATE;
+
+        static {
+            try {
+                STATE = MethodHandles.lookup().findVarHandle(Timeout.class, "state", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private static final int PENDING = 0;
+        private static final int CLOSED = 1;
+        private static final int CANCELLED = 2;
+
+        private final AuctionCloser closer;
+        private final long lotId;
+        private final AuctionStoppable auction;
+        private final long deadline;
+
+        private volatile int state = PENDING;
+        private Timeout next; // in the scheduled stack or in a bucket, accessed by the worker after the push
+        private long remainingRounds;
+
+        private Timeout(AuctionCloser closer, long lotId, AuctionStoppable auction, long deadline) {
+            this.closer = closer;
+            this.lotId = lotId;
+            this.auction = auction;
+            this.deadline = deadline;
+        }
+
+        public long getLotId() {
+            return lotId;
+        }
+
+        /**
+         * Returns false if the auction is already closed by the wheel or the timeout is cancelled before.
+         */
+        public boolean cancel() {
+            if (!compareAndSetState(PENDING, CANCELLED)) {
+                return false;
+            }
+            closer.cancelledCount.increment();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isClosed() {
+            return state == CLOSED;
+        }
+
+        private boolean compareAndSetState(int expected, int state) {
+            return STATE.compareAndSet(this, expected, state);
+        }
+    }
+}
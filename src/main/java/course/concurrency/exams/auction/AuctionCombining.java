@@ -0,0 +1,169 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Contention-adaptive auction.
+ * <p>
+ * Without contention a bid is applied with a single CAS as in {@link AuctionOptimistic}. When the CAS
+ * fails, the bid is published to a slot of the combining array instead of retrying: one of the waiting
+ * threads becomes the combiner, picks the highest of the published bids, publishes it with one CAS and
+ * resolves the rest as lost. So under high thread counts the shared reference is updated once per batch
+ * rather than once per retry.
+ * <p>
+ * Prices only grow, so any price seen once is a lower bound of the current price. Such prices are kept
+ * per slot, and most losing bids are rejected by them without touching the shared reference.
+ */
+public class AuctionCombining implements Auction {
+
+    // slot values set by the combiner, the owner of the slot clears them
+    private static final Bid ACCEPTED = new Bid(-1, -1, -1);
+    private static final Bid REJECTED = new Bid(-1, -1, -1);
+
+    // keep slots and floors of different threads on different cache lines
+    private static final int SLOT_STRIDE = 16;
+    private static final int FLOOR_STRIDE = 8;
+    private static final int PROBES = 2;
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final Notifier notifier;
+
+    private final AtomicReference<Bid> bidRef = new AtomicReference<>(Bid.DUMMY);
+    private final ReentrantLock combinerLock = new ReentrantLock();
+    private final AtomicReferenceArray<Bid> slots;
+    private final AtomicLongArray floors;
+    private final int slotMask;
+
+    public AuctionCombining(Notifier notifier) {
+        this(notifier, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public AuctionCombining(Notifier notifier, int slotCount) {
+        this.notifier = notifier;
+        int size = Math.max(2, Integer.highestOneBit(slotCount - 1) << 1);
+        this.slotMask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size * SLOT_STRIDE);
+        this.floors = new AtomicLongArray(size * FLOOR_STRIDE);
+    }
+
+    public boolean propose(Bid bid) {
+        int home = (int) Thread.currentThread().getId() & slotMask;
+        if (bid.getPrice() <= floors.get(home * FLOOR_STRIDE)) {
+            return false;
+        }
+
+        Bid expected = bidRef.get();
+        if (bid.getPrice() <= expected.getPrice()) {
+            floors.lazySet(home * FLOOR_STRIDE, expected.getPrice());
+            return false;
+        }
+        if (bidRef.compareAndSet(expected, bid)) {
+            notifier.sendOutdatedMessage(expected);
+            return true;
+        }
+
+        int slot = publish(home, bid);
+        return slot < 0 ? proposeDirectly(bid) : awaitResolution(slot);
+    }
+
+    public Bid getLatestBid() {
+        return bidRef.get();
+    }
+
+    private int publish(int home, Bid bid) {
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (home + probe) & slotMask;
+            if (slots.compareAndSet(slot * SLOT_STRIDE, null, bid)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // fallback when all probed slots are taken by other threads
+    private boolean proposeDirectly(Bid bid) {
+        Bid expected;
+        do {
+            expected = bidRef.get();
+            if (bid.getPrice() <= expected.getPrice()) {
+                return false;
+            }
+        } while (!bidRef.compareAndSet(expected, bid));
+        notifier.sendOutdatedMessage(expected);
+        return true;
+    }
+
+    private boolean awaitResolution(int slot) {
+        for (int spins = 1; ; spins++) {
+            Bid state = slots.get(slot * SLOT_STRIDE);
+            if (state == ACCEPTED || state == REJECTED) {
+                slots.set(slot * SLOT_STRIDE, null);
+                return state == ACCEPTED;
+            }
+            if (combinerLock.tryLock()) {
+                try {
+                    combine();
+                } finally {
+                    combinerLock.unlock();
+                }
+            } else if (spins % SPINS_BEFORE_YIELD == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /*
+     * Only the highest pending bid may be accepted. Pending bids not above the price published afterwards
+     * are resolved as lost, that price is current at the moment of resolution. Bids above it arrived after
+     * the scan and are left for the next combiner.
+     */
+    private void combine() {
+        Bid best = null;
+        for (int slot = 0; slot <= slotMask; slot++) {
+            Bid pending = slots.get(slot * SLOT_STRIDE);
+            if (isPending(pending) && (best == null || pending.getPrice() > best.getPrice())) {
+                best = pending;
+            }
+        }
+        if (best == null) {
+            return;
+        }
+
+        Bid current;
+        boolean accepted = false;
+        do {
+            current = bidRef.get();
+            if (best.getPrice() <= current.getPrice()) {
+                break;
+            }
+            accepted = bidRef.compareAndSet(current, best);
+        } while (!accepted);
+        if (accepted) {
+            notifier.sendOutdatedMessage(current);
+            current = best;
+        }
+
+        for (int slot = 0; slot <= slotMask; slot++) {
+            Bid pending = slots.get(slot * SLOT_STRIDE);
+            if (!isPending(pending)) {
+                continue;
+            }
+            if (pending == best && accepted) {
+                slots.set(slot * SLOT_STRIDE, ACCEPTED);
+                accepted = false; // the same bid proposed twice is accepted once
+            } else if (pending.getPrice() <= current.getPrice()) {
+                slots.set(slot * SLOT_STRIDE, REJECTED);
+            }
+            floors.lazySet(slot * FLOOR_STRIDE, current.getPrice());
+        }
+    }
+
+    private static boolean isPending(Bid bid) {
+        return bid != null && bid != ACCEPTED && bid != REJECTED;
+    }
+}
@@ -0,0 +1,228 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Multi-lot auction engine.
+ * <p>
+ * Lots are spread over independent stripes. Each stripe keeps its lots in an open-addressing table
+ * of primitive lot ids and latest bids, so an idle lot costs one table slot (a {@code long} key and
+ * a reference to the shared {@link Bid#DUMMY}), that is 16-32 bytes depending on the table fill,
+ * instead of a whole {@link AuctionOptimistic} with its own atomic reference.
+ * <p>
+ * A bid on a known lot is applied with a CAS on the slot of that lot only, so bids on different
+ * lots never contend. The stripe lock is taken only to register a new lot or to grow the table.
+ */
+public class AuctionHouse {
+
+    private static final int DEFAULT_STRIPES_PER_CPU = 4;
+    private static final int DEFAULT_STRIPE_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // put to every slot of a table which is being copied to a bigger one
+    private static final Bid MOVED = new Bid(-1, -1, -1);
+
+    private final Notifier notifier;
+    private final Stripe[] stripes;
+
+    public AuctionHouse(Notifier notifier) {
+        this(notifier, Runtime.getRuntime().availableProcessors() * DEFAULT_STRIPES_PER_CPU, 0);
+    }
+
+    public AuctionHouse(Notifier notifier, int stripeCount, int expectedLots) {
+        if (stripeCount <= 0 || expectedLots < 0) {
+            throw new IllegalArgumentException("Illegal house size: stripes=" + stripeCount + ", lots=" + expectedLots);
+        }
+        this.notifier = notifier;
+        this.stripes = new Stripe[powerOfTwo(stripeCount)];
+        int stripeCapacity = powerOfTwo((int) (expectedLots / stripes.length / LOAD_FACTOR) + 1);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(Math.max(stripeCapacity, DEFAULT_STRIPE_CAPACITY));
+        }
+    }
+
+    /**
+     * Registers the lot in advance, lots are also registered on the first bid.
+     */
+    public void openLot(long lotId) {
+        long hash = hash(lotId);
+        stripeFor(hash).register(lotId, hash);
+    }
+
+    public boolean propose(long lotId, Bid bid) {
+        long hash = hash(lotId);
+        Stripe stripe = stripeFor(hash);
+        while (true) {
+            Table table = stripe.table;
+            int index = table.indexOf(lotId, hash);
+            if (index < 0) {
+                stripe.register(lotId, hash);
+                continue;
+            }
+            Bid expected = table.bids.get(index);
+            if (expected == MOVED) {
+                stripe.awaitResize();
+                continue;
+            }
+            if (bid.getPrice() <= expected.getPrice()) {
+                return false;
+            }
+            if (table.bids.compareAndSet(index, expected, bid)) {
+                notifier.sendOutdatedMessage(expected);
+                return true;
+            }
+        }
+    }
+
+    public Bid getLatestBid(long lotId) {
+        long hash = hash(lotId);
+        Stripe stripe = stripeFor(hash);
+        while (true) {
+            Table table = stripe.table;
+            int index = table.indexOf(lotId, hash);
+            if (index < 0) {
+                return Bid.DUMMY;
+            }
+            Bid bid = table.bids.get(index);
+            if (bid != MOVED) {
+                return bid;
+            }
+            stripe.awaitResize();
+        }
+    }
+
+    /**
+     * Single lot of the house viewed as an ordinary {@link Auction}.
+     */
+    public Auction lot(long lotId) {
+        return new Auction() {
+            @Override
+            public boolean propose(Bid bid) {
+                return AuctionHouse.this.propose(lotId, bid);
+            }
+
+            @Override
+            public Bid getLatestBid() {
+                return AuctionHouse.this.getLatestBid(lotId);
+            }
+        };
+    }
+
+    public int lotCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    private static long hash(long lotId) {
+        return lotId * 0x9E3779B97F4A7C15L;
+    }
+
+    private static int powerOfTwo(int value) {
+        int highestBit = Integer.highestOneBit(value);
+        return highestBit == value ? value : highestBit << 1;
+    }
+
+    private static class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile Table table;
+        private int size; // guarded by lock
+
+        Stripe(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        void register(long lotId, long hash) {
+            lock.lock();
+            try {
+                if (table.indexOf(lotId, hash) >= 0) {
+                    return; // registered by another thread
+                }
+                if (size + 1 > table.capacity() * LOAD_FACTOR) {
+                    table = resize(table);
+                }
+                table.insert(lotId, hash, Bid.DUMMY);
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // copies slots one by one, proposers which meet MOVED wait for the new table on the lock
+        private Table resize(Table oldTable) {
+            Table newTable = new Table(oldTable.capacity() * 2);
+            for (int i = 0; i < oldTable.capacity(); i++) {
+                Bid bid = oldTable.bids.getAndSet(i, MOVED);
+                if (bid != null) {
+                    long lotId = oldTable.lotIds[i];
+                    newTable.insert(lotId, hash(lotId), bid);
+                }
+            }
+            return newTable;
+        }
+
+        void awaitResize() {
+            lock.lock();
+            lock.unlock();
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class Table {
+
+        // lot id is written before the bid is published to the slot, readers check the bid first
+        private final long[] lotIds;
+        private final AtomicReferenceArray<Bid> bids;
+
+        Table(int capacity) {
+            this.lotIds = new long[capacity];
+            this.bids = new AtomicReferenceArray<>(capacity);
+        }
+
+        int capacity() {
+            return lotIds.length;
+        }
+
+        // returns slot of the lot, slot marked as MOVED or -1 when the lot is absent
+        int indexOf(long lotId, long hash) {
+            int mask = lotIds.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                Bid bid = bids.get(i);
+                if (bid == null) {
+                    return -1;
+                }
+                if (bid == MOVED || lotIds[i] == lotId) {
+                    return i;
+                }
+            }
+        }
+
+        // called under stripe lock only
+        void insert(long lotId, long hash, Bid bid) {
+            int mask = lotIds.length - 1;
+            int i = (int) hash & mask;
+            while (bids.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            lotIds[i] = lotId;
+            bids.set(i, bid);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package course.concurrency.exams.auction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Stoppable auction which keeps the latest bid in primitive fields instead of a {@link Bid} reference.
+ * <p>
+ * Fields are guarded by a sequence lock: writers make the sequence odd with a CAS, update the fields
+ * and make it even again, readers retry until they see the same even sequence before and after
+ * the read. Neither {@link #proposeRaw} nor the CAS allocate, so losing bids cost no garbage at all,
+ * and an accepted bid allocates only the outdated {@link Bid} handed to the {@link Notifier}.
+ */
+public class AuctionStoppablePrimitive implements AuctionStoppable {
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup()
+                    .findVarHandle(AuctionStoppablePrimitive.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final Notifier notifier;
+
+    public AuctionStoppablePrimitive(Notifier notifier) {
+        this.notifier = notifier;
+    }
+
+    private volatile long sequence = 0; // odd while the fields below are being updated
+    private long id = 0;
+    private long participantId = 0;
+    private volatile long price = 0; // volatile for the fast check without sequence
+    private volatile boolean stopped = false;
+
+    public boolean propose(Bid bid) {
+        return proposeRaw(bid.getId(), bid.getParticipantId(), bid.getPrice());
+    }
+
+    public boolean proposeRaw(long id, long participantId, long price) {
+        if (stopped || price <= this.price) { //fast check
+            return false;
+        }
+
+        long seq = lockSequence();
+        if (stopped || price <= this.price) {
+            unlockSequence(seq);
+            return false;
+        }
+        long outdatedId = this.id;
+        long outdatedParticipantId = this.participantId;
+        long outdatedPrice = this.price;
+        this.id = id;
+        this.participantId = participantId;
+        this.price = price;
+        unlockSequence(seq);
+
+        notifier.sendOutdatedMessage(toBid(outdatedId, outdatedParticipantId, outdatedPrice));
+        return true;
+    }
+
+    public Bid getLatestBid() {
+        for (int spins = 1; ; spins++) {
+            long seq = sequence;
+            if ((seq & 1) == 0) {
+                long id = this.id;
+                long participantId = this.participantId;
+                long price = this.price;
+                VarHandle.acquireFence();
+                if (seq == sequence) {
+                    return toBid(id, participantId, price);
+                }
+            }
+            backOff(spins);
+        }
+    }
+
+    @Override
+    public BidSnapshot getLatestBidIfChanged(long sinceVersion) {
+        if (price == sinceVersion) { // without allocation of the bid
+            return null;
+        }
+        Bid latest = getLatestBid();
+        return new BidSnapshot(latest, latest.getPrice());
+    }
+
+    public Bid stopAuction() {
+        long seq = lockSequence();
+        stopped = true;
+        Bid latest = toBid(id, participantId, price);
+        unlockSequence(seq);
+        return latest;
+    }
+
+    private long lockSequence() {
+        for (int spins = 1; ; spins++) {
+            long seq = sequence;
+            if ((seq & 1) == 0 && SEQUENCE.compareAndSet(this, seq, seq + 1)) {
+                return seq + 1;
+            }
+            backOff(spins);
+        }
+    }
+
+    private void unlockSequence(long seq) {
+        sequence = seq + 1;
+    }
+
+    private static void backOff(int spins) {
+        if (spins % SPINS_BEFORE_YIELD == 0) {
+            Thread.yield();
+        } else {
+            Thread.onSpinWait();
+        }
+    }
+
+    // bid with zero price is never accepted, so zero price means the initial state
+    private static Bid toBid(long id, long participantId, long price) {
+        return price == 0 ? Bid.DUMMY : new Bid(id, participantId, price);
+    }
+}
@@ -0,0 +1,228 @@
+package course.concurrency.exams.auction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Notifier which sends outdated messages in bulk from its own thread instead of the common pool.
+ * <p>
+ * Messages are coalesced by participant: while a participant waits in the queue, newer outdated bids
+ * replace the older one, so only the latest is sent. The worker collects up to {@code maxBatchSize}
+ * participants or waits {@code lingerMillis} for more of them and hands the batch to the sender.
+ * The queue holds at most {@code capacity} participants, on overflow a message is dropped or
+ * the caller is blocked depending on {@link OverflowPolicy}.
+ * <p>
+ * Note that an auction calls the notifier while holding its bid lock, {@link AuctionPessimistic} does,
+ * so with {@link OverflowPolicy#BLOCK} a slow sender stalls every bid of the lot, not only the caller.
+ * Prefer {@link OverflowPolicy#DROP} for auctions which notify under a lock.
+ * <p>
+ * Being a {@link Notifier}, it can be passed to any auction as is.
+ */
+public class BatchingNotifier extends Notifier {
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static final long IDLE_POLL_MILLIS = 100L;
+
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<List<Bid>> sender;
+
+    // participant is in the queue as long as it has a pending message
+    private final Map<Long, Bid> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<Long> participants;
+
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram sendLatencyMicros = new Histogram();
+
+    public BatchingNotifier(int capacity, int maxBatchSize, long lingerMillis, OverflowPolicy overflowPolicy) {
+        this(capacity, maxBatchSize, lingerMillis, overflowPolicy, BatchingNotifier::imitateBulkSending);
+    }
+
+    public BatchingNotifier(int capacity, int maxBatchSize, long lingerMillis,
+                            OverflowPolicy overflowPolicy, Consumer<List<Bid>> sender) {
+        if (capacity <= 0 || maxBatchSize <= 0 || lingerMillis < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal notifier config: capacity=%d, maxBatchSize=%d, lingerMillis=%d",
+                    capacity, maxBatchSize, lingerMillis));
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.sender = sender;
+        this.participants = new ArrayBlockingQueue<>(capacity);
+
+        worker = new Thread(this::processBatches);
+        worker.setName("BatchingNotifier_Sender");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void sendOutdatedMessage(Bid bid) {
+        if (bid == Bid.DUMMY) {
+            return; // nobody to notify
+        }
+        if (!running) {
+            dropped.increment();
+            return;
+        }
+
+        Long participantId = bid.getParticipantId();
+        if (pending.put(participantId, bid) != null) {
+            coalesced.increment();
+            return;
+        }
+        if (!enqueue(participantId)) {
+            // message coalesced into this one meanwhile is dropped as well
+            pending.remove(participantId);
+            dropped.increment();
+            return;
+        }
+        if (!running && participants.remove(participantId)) {
+            // shut down since the check above, the worker may have already left, so nobody would send it
+            pending.remove(participantId);
+            dropped.increment();
+            return;
+        }
+        enqueued.increment();
+    }
+
+    private boolean enqueue(Long participantId) {
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            return participants.offer(participantId);
+        }
+        try {
+            participants.put(participantId);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void processBatches() {
+        while (running || !participants.isEmpty()) {
+            List<Long> batchIds = new ArrayList<>(maxBatchSize);
+            try {
+                collectBatch(batchIds);
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (batchIds.isEmpty()) {
+                continue;
+            }
+
+            List<Bid> batch = new ArrayList<>(batchIds.size());
+            for (Long participantId : batchIds) {
+                Bid bid = pending.remove(participantId);
+                if (bid != null) {
+                    batch.add(bid);
+                }
+            }
+            deliver(batch);
+        }
+    }
+
+    private void collectBatch(List<Long> batchIds) throws InterruptedException {
+        Long first = participants.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batchIds.add(first);
+
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batchIds.size() < maxBatchSize) {
+            participants.drainTo(batchIds, maxBatchSize - batchIds.size());
+            long lingerLeft = deadline - System.nanoTime();
+            if (batchIds.size() == maxBatchSize || lingerLeft <= 0) {
+                return;
+            }
+            Long next = participants.poll(lingerLeft, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batchIds.add(next);
+        }
+    }
+
+    private void deliver(List<Bid> batch) {
+        long start = System.nanoTime();
+        try {
+            sender.accept(batch);
+            sent.add(batch.size());
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+        }
+        sendLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        batchSizes.record(batch.size());
+    }
+
+    private static void imitateBulkSending(List<Bid> batch) {
+        try {
+            Thread.sleep(2000);
+        } catch (InterruptedException e) {}
+    }
+
+    /**
+     * Stops accepting messages, messages already in the queue are still sent.
+     * Messages racing with the shutdown are either sent or counted as dropped.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        worker.join(unit.toMillis(timeout));
+        return !worker.isAlive();
+    }
+
+    public int getQueueDepth() {
+        return participants.size();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    public Histogram getSendLatencyMicros() {
+        return sendLatencyMicros;
+    }
+}
@@ -0,0 +1,120 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Rejects useless bids of a participant before they reach the auction.
+ * <p>
+ * A bid is a duplicate if its participant has already proposed the same or a higher price to this auction:
+ * the earlier bid was either accepted or lost to a higher one, and prices of an auction only grow,
+ * so the new bid is bound to lose. Other bids spend a token of the participant's bucket, which holds
+ * up to {@code burst} tokens and gets {@code ratePerSecond} tokens a second, and are rejected when
+ * the bucket is empty.
+ * <p>
+ * Both the highest price and the bucket of every participant are kept in {@link StripedLongLongMap},
+ * the bucket is packed into one long: refill time in microseconds and the number of tokens.
+ * One filter serves one auction, participants are never evicted.
+ */
+public class BidAdmissionFilter {
+
+    public enum Decision { ADMITTED, DUPLICATE, RATE_LIMITED }
+
+    private static final int TOKEN_BITS = 16;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long REJECTED = Long.MIN_VALUE; // flag of the bucket which had no token
+    private static final long NO_PRICE = Long.MIN_VALUE;
+    private static final int DEFAULT_STRIPES_PER_CPU = 4;
+
+    private final long ratePerSecond;
+    private final long burst;
+    private final long refillMicros; // time to fill an empty bucket
+    private final long startNanos = System.nanoTime();
+
+    private final StripedLongLongMap highestPrices;
+    private final StripedLongLongMap buckets;
+    private final LongBinaryOperator takeToken = this::takeToken;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    public BidAdmissionFilter(long ratePerSecond, int burst) {
+        this(ratePerSecond, burst, Runtime.getRuntime().availableProcessors() * DEFAULT_STRIPES_PER_CPU);
+    }
+
+    public BidAdmissionFilter(long ratePerSecond, int burst, int stripeCount) {
+        if (ratePerSecond <= 0 || burst <= 0 || burst > TOKEN_MASK) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal filter config: ratePerSecond=%d, burst=%d", ratePerSecond, burst));
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.refillMicros = burst * TimeUnit.SECONDS.toMicros(1) / ratePerSecond;
+        this.highestPrices = new StripedLongLongMap(stripeCount);
+        this.buckets = new StripedLongLongMap(stripeCount);
+    }
+
+    public Decision admit(Bid bid) {
+        long participantId = bid.getParticipantId();
+        if (bid.getPrice() <= highestPrices.get(participantId, NO_PRICE)) {
+            duplicates.increment();
+            return Decision.DUPLICATE;
+        }
+
+        long now = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        long bucket = buckets.update(participantId, pack(now, burst), now, takeToken);
+        if ((bucket & REJECTED) != 0) {
+            rateLimited.increment();
+            return Decision.RATE_LIMITED;
+        }
+
+        highestPrices.update(participantId, NO_PRICE, bid.getPrice(), Math::max);
+        admitted.increment();
+        return Decision.ADMITTED;
+    }
+
+    private long takeToken(long bucket, long now) {
+        long refilledAt = (bucket & ~REJECTED) >>> TOKEN_BITS;
+        long tokens = bucket & TOKEN_MASK;
+        long elapsed = now - refilledAt;
+        if (elapsed >= refillMicros) {
+            tokens = burst;
+            refilledAt = now;
+        } else if (elapsed > 0) {
+            long added = elapsed * ratePerSecond / TimeUnit.SECONDS.toMicros(1);
+            // time of a partly added token is not lost
+            refilledAt += added * TimeUnit.SECONDS.toMicros(1) / ratePerSecond;
+            tokens = Math.min(burst, tokens + added);
+        }
+        return tokens == 0 ? pack(refilledAt, 0) | REJECTED : pack(refilledAt, tokens - 1);
+    }
+
+    private static long pack(long micros, long tokens) {
+        return micros << TOKEN_BITS | tokens;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Bids which never reached the auction.
+     */
+    public long getRejectedCount() {
+        return duplicates.sum() + rateLimited.sum();
+    }
+
+    public int getParticipantCount() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,207 @@
+package course.concurrency.exams.auction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Journal of accepted bids in a memory-mapped file.
+ * <p>
+ * Every bid is a fixed-width record: auction id, bid id, participant id, price and a checksum written last.
+ * Appending threads reserve a record with an atomic counter and write it straight to the mapped memory,
+ * nobody waits for the disk: a background thread forces the written pages once per commit interval,
+ * so one fsync covers all bids of the interval. {@link #flush()} forces them on demand.
+ * <p>
+ * On open the file is scanned and the highest bid of every auction is rebuilt, records with a wrong
+ * checksum (never finished before a crash) are skipped.
+ */
+public class BidJournal implements Closeable {
+
+    static final int RECORD_SIZE = 5 * Long.BYTES;
+
+    private static final int DEFAULT_SEGMENT_RECORDS = 1 << 20; // 40 MB per segment
+    private static final int MAX_SEGMENTS = 1024;
+    private static final long CHECKSUM_SEED = 0x5DEECE66DL;
+
+    private final FileChannel channel;
+    private final int segmentRecords;
+    private final long capacity;
+    private final AtomicReferenceArray<MappedByteBuffer> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    private final Object mappingLock = new Object();
+
+    private final AtomicLong nextRecord = new AtomicLong();
+    private final LongAdder writtenRecords = new LongAdder();
+    private long flushedRecords; // guarded by this
+    private final Map<Long, Bid> recoveredBids;
+
+    private final ScheduledExecutorService committer;
+
+    public BidJournal(Path file, long commitIntervalMillis) {
+        this(file, commitIntervalMillis, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    BidJournal(Path file, long commitIntervalMillis, int segmentRecords) {
+        this.segmentRecords = segmentRecords;
+        this.capacity = (long) MAX_SEGMENTS * segmentRecords;
+        try {
+            this.channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.recoveredBids = Collections.unmodifiableMap(recover());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open bid journal " + file, e);
+        }
+        this.flushedRecords = nextRecord.get();
+        this.writtenRecords.add(flushedRecords);
+
+        committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("BidJournal_Committer");
+            t.setDaemon(true);
+            return t;
+        });
+        committer.scheduleWithFixedDelay(this::flush, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the bid to the journal and returns its record, fails if the journal is full.
+     */
+    public long append(long auctionId, Bid bid) {
+        long record = nextRecord.getAndIncrement();
+        MappedByteBuffer segment = segment((int) (record / segmentRecords));
+        int offset = (int) (record % segmentRecords) * RECORD_SIZE;
+
+        segment.putLong(offset, auctionId);
+        segment.putLong(offset + Long.BYTES, bid.getId());
+        segment.putLong(offset + 2 * Long.BYTES, bid.getParticipantId());
+        segment.putLong(offset + 3 * Long.BYTES, bid.getPrice());
+        segment.putLong(offset + 4 * Long.BYTES,
+                checksum(auctionId, bid.getId(), bid.getParticipantId(), bid.getPrice()));
+        writtenRecords.increment();
+        return record;
+    }
+
+    /**
+     * Voids an appended record, it is skipped on recovery as a torn one.
+     */
+    public void discard(long record) {
+        MappedByteBuffer segment = segment((int) (record / segmentRecords));
+        int checksumOffset = (int) (record % segmentRecords) * RECORD_SIZE + 4 * Long.BYTES;
+        segment.putLong(checksumOffset, ~segment.getLong(checksumOffset));
+    }
+
+    /**
+     * Forces all appended records to the disk.
+     */
+    public synchronized void flush() {
+        long written = writtenRecords.sum();
+        long appended = getAppendedCount();
+        if (appended == flushedRecords) {
+            return;
+        }
+        int lastSegment = (int) ((appended - 1) / segmentRecords);
+        for (int i = (int) (flushedRecords / segmentRecords); i <= lastSegment; i++) {
+            MappedByteBuffer segment = segments.get(i);
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        // records still being written are forced again on the next flush
+        if (written == appended) {
+            flushedRecords = appended;
+        }
+    }
+
+    /**
+     * Highest bid of every auction found in the journal on open, by auction id.
+     */
+    public Map<Long, Bid> getRecoveredBids() {
+        return recoveredBids;
+    }
+
+    // records reserved when the journal was full are never written
+    public long getAppendedCount() {
+        return Math.min(nextRecord.get(), capacity);
+    }
+
+    @Override
+    public void close() {
+        committer.shutdown();
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<Long, Bid> recover() throws IOException {
+        Map<Long, Bid> latest = new HashMap<>();
+        long records = channel.size() / RECORD_SIZE;
+        long lastValid = -1;
+        for (long record = 0; record < records; record++) {
+            MappedByteBuffer segment = segment((int) (record / segmentRecords));
+            int offset = (int) (record % segmentRecords) * RECORD_SIZE;
+
+            long auctionId = segment.getLong(offset);
+            long id = segment.getLong(offset + Long.BYTES);
+            long participantId = segment.getLong(offset + 2 * Long.BYTES);
+            long price = segment.getLong(offset + 3 * Long.BYTES);
+            if (segment.getLong(offset + 4 * Long.BYTES) != checksum(auctionId, id, participantId, price)) {
+                continue;
+            }
+            lastValid = record;
+            Bid known = latest.get(auctionId);
+            if (known == null || known.getPrice() < price) {
+                latest.put(auctionId, new Bid(id, participantId, price));
+            }
+        }
+        nextRecord.set(lastValid + 1);
+        return latest;
+    }
+
+    private MappedByteBuffer segment(int index) {
+        if (index >= MAX_SEGMENTS) {
+            throw new IllegalStateException("Bid journal is full: " + MAX_SEGMENTS + " segments");
+        }
+        MappedByteBuffer segment = segments.get(index);
+        if (segment != null) {
+            return segment;
+        }
+        synchronized (mappingLock) {
+            segment = segments.get(index);
+            if (segment == null) {
+                long segmentBytes = (long) segmentRecords * RECORD_SIZE;
+                try {
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, index * segmentBytes, segmentBytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot map bid journal segment " + index, e);
+                }
+                segments.set(index, segment);
+            }
+            return segment;
+        }
+    }
+
+    // zeroed record never matches its checksum
+    private static long checksum(long auctionId, long id, long participantId, long price) {
+        long hash = CHECKSUM_SEED;
+        hash = (hash ^ auctionId) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ id) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ participantId) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ price) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,20 @@
+package course.concurrency.exams.auction;
+
+public class BidSnapshot {
+
+    private final Bid bid;
+    private final long version;
+
+    public BidSnapshot(Bid bid, long version) {
+        this.bid = bid;
+        this.version = version;
+    }
+
+    public Bid getBid() {
+        return bid;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
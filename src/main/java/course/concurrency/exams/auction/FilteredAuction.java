@@ -0,0 +1,35 @@
+package course.concurrency.exams.auction;
+
+/**
+ * Auction which proposes to the delegate only the bids admitted by {@link BidAdmissionFilter}.
+ */
+public class FilteredAuction implements Auction {
+
+    private final Auction delegate;
+    private final BidAdmissionFilter filter;
+
+    public FilteredAuction(Auction delegate, BidAdmissionFilter filter) {
+        this.delegate = delegate;
+        this.filter = filter;
+    }
+
+    public boolean propose(Bid bid) {
+        if (filter.admit(bid) != BidAdmissionFilter.Decision.ADMITTED) {
+            return false;
+        }
+        return delegate.propose(bid);
+    }
+
+    public Bid getLatestBid() {
+        return delegate.getLatestBid();
+    }
+
+    @Override
+    public BidSnapshot getLatestBidIfChanged(long sinceVersion) {
+        return delegate.getLatestBidIfChanged(sinceVersion);
+    }
+
+    public BidAdmissionFilter getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,56 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram with power of two buckets: bucket i counts values from 2^i to 2^(i+1)-1,
+ * zero goes to the first bucket.
+ */
+public class Histogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+
+    public void record(long value) {
+        buckets.incrementAndGet(bucketOf(value));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, zero for empty histogram.
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > 0 && seen >= rank) {
+                return i == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int bucketOf(long value) {
+        return value <= 1 ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    }
+}
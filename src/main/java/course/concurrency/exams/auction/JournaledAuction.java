@@ -0,0 +1,54 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Auction which writes every bid to a {@link BidJournal} ahead of proposing it to the delegate.
+ * <p>
+ * A bid is journaled before anybody can see it accepted, so it survives a crash of the process
+ * as soon as the delegate accepts it, and a crash of the machine once the journal has flushed it.
+ * A bid the delegate rejects is discarded from the journal, a full journal fails the proposal
+ * before the delegate has seen the bid. Bids not higher than the latest one are rejected without journaling.
+ * <p>
+ * The latest bid recovered from the journal is restored on creation without proposing it to the delegate,
+ * so nobody is notified: it stays the latest bid until the delegate accepts a higher one,
+ * then its participant is notified as outbid.
+ */
+public class JournaledAuction implements Auction {
+
+    private final long auctionId;
+    private final Auction delegate;
+    private final BidJournal journal;
+    private final Notifier notifier;
+    private final Bid recovered;
+    private final AtomicBoolean recoveredOutbid = new AtomicBoolean();
+
+    public JournaledAuction(long auctionId, Auction delegate, BidJournal journal, Notifier notifier) {
+        this.auctionId = auctionId;
+        this.delegate = delegate;
+        this.journal = journal;
+        this.notifier = notifier;
+        this.recovered = journal.getRecoveredBids().get(auctionId);
+    }
+
+    public boolean propose(Bid bid) {
+        if (bid.getPrice() <= getLatestBid().getPrice()) {
+            return false;
+        }
+        long record = journal.append(auctionId, bid);
+        if (!delegate.propose(bid)) {
+            journal.discard(record); // outbid meanwhile
+            return false;
+        }
+        // the delegate knows nothing of the recovered bid and has notified its initial one instead
+        if (recovered != null && recoveredOutbid.compareAndSet(false, true)) {
+            notifier.sendOutdatedMessage(recovered);
+        }
+        return true;
+    }
+
+    public Bid getLatestBid() {
+        Bid latest = delegate.getLatestBid();
+        return recovered != null && latest.getPrice() < recovered.getPrice() ? recovered : latest;
+    }
+}
@@ -0,0 +1,130 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Concurrent map of primitive longs without boxing.
+ * <p>
+ * Keys are spread over stripes, each stripe is an open-addressing table guarded by its own lock,
+ * so threads working with different stripes never contend and no operation allocates
+ * unless a table grows. Entries are never removed.
+ */
+class StripedLongLongMap {
+
+    private static final int DEFAULT_STRIPE_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Stripe[] stripes;
+
+    StripedLongLongMap(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Illegal stripe count: " + stripeCount);
+        }
+        int highestBit = Integer.highestOneBit(stripeCount);
+        this.stripes = new Stripe[highestBit == stripeCount ? stripeCount : highestBit << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    long get(long key, long absentValue) {
+        long hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        stripe.lock.lock();
+        try {
+            int index = stripe.indexOf(key, hash);
+            return stripe.used[index] ? stripe.values[index] : absentValue;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the value of the key with {@code function(value, argument)}, where value is
+     * {@code absentValue} for a new key, and returns the new value. The function is called under
+     * the stripe lock, so it should be short and must not touch the map.
+     */
+    long update(long key, long absentValue, long argument, LongBinaryOperator function) {
+        long hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        stripe.lock.lock();
+        try {
+            int index = stripe.indexOf(key, hash);
+            if (!stripe.used[index]) {
+                if (stripe.size + 1 > stripe.keys.length * LOAD_FACTOR) {
+                    stripe.grow();
+                    index = stripe.indexOf(key, hash);
+                }
+                stripe.used[index] = true;
+                stripe.keys[index] = key;
+                stripe.values[index] = absentValue;
+                stripe.size++;
+            }
+            long value = function.applyAsLong(stripe.values[index], argument);
+            stripe.values[index] = value;
+            return value;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    private static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    // all fields are guarded by lock
+    private static class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private long[] keys = new long[DEFAULT_STRIPE_CAPACITY];
+        private long[] values = new long[DEFAULT_STRIPE_CAPACITY];
+        private boolean[] used = new boolean[DEFAULT_STRIPE_CAPACITY];
+        private int size;
+
+        // returns slot of the key or the free slot where it should be inserted
+        int indexOf(long key, long hash) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (used[i] && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int index = indexOf(oldKeys[i], hash(oldKeys[i]));
+                    used[index] = true;
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+}
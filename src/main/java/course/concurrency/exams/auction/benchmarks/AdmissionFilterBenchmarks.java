@@ -0,0 +1,95 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proposals to an auction with and without {@link BidAdmissionFilter} in front of it.
+ * <p>
+ * Honest participants always raise their own price, so the filter only adds its latency.
+ * Bots resend their last bid most of the time and raise it once in {@link #BOT_RAISE_EVERY} bids.
+ * The share of bids stopped by the filter is printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AdmissionFilterBenchmarks {
+
+    public static final int PROPOSERS = 8;
+    private static final int PARTICIPANTS = 10_000;
+    private static final int BOT_RAISE_EVERY = 16;
+    private static final long RATE_PER_SECOND = 1_000_000L;
+    private static final int BURST = 1000;
+
+    @Param({"optimistic", "pessimistic"})
+    private String type;
+
+    @Param({"honest", "bots"})
+    private String participants;
+
+    private final Notifier notifier = new NoopNotifier();
+
+    private Auction plain;
+    private FilteredAuction filtered;
+    private long[] lastPrices;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AdmissionFilterBenchmarks.class.getName())
+                .threads(PROPOSERS)
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        plain = AuctionTypes.create(type, notifier);
+        filtered = new FilteredAuction(AuctionTypes.create(type, notifier),
+                new BidAdmissionFilter(RATE_PER_SECOND, BURST));
+        lastPrices = new long[PARTICIPANTS];
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        BidAdmissionFilter filter = filtered.getFilter();
+        long total = filter.getAdmittedCount() + filter.getRejectedCount();
+        if (total > 0) {
+            System.out.printf("%nfilter stopped %d of %d bids (%.1f%%): %d duplicates, %d rate limited%n",
+                    filter.getRejectedCount(), total, 100.0 * filter.getRejectedCount() / total,
+                    filter.getDuplicateCount(), filter.getRateLimitedCount());
+        }
+    }
+
+    @Benchmark
+    public boolean proposePlain() {
+        return plain.propose(nextBid());
+    }
+
+    @Benchmark
+    public boolean proposeFiltered() {
+        return filtered.propose(nextBid());
+    }
+
+    // racy on purpose: participant's own price may go down a bit, as with a real bot
+    private Bid nextBid() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int participant = random.nextInt(PARTICIPANTS);
+        long price = lastPrices[participant];
+        if (price == 0 || participants.equals("honest") || random.nextInt(BOT_RAISE_EVERY) == 0) {
+            price = System.nanoTime();
+            lastPrices[participant] = price;
+        }
+        return new Bid(price, participant, price);
+    }
+}
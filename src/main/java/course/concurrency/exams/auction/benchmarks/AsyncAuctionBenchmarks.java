@@ -0,0 +1,94 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.AsyncAuction;
+import course.concurrency.exams.auction.Auction;
+import course.concurrency.exams.auction.Bid;
+import course.concurrency.exams.auction.Notifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronous proposals to an auction against proposals through {@link AsyncAuction} wrapping
+ * the same kind of auction. {@code proposeAsync} waits for every result as a blocking caller would,
+ * {@code proposeAsyncPipelined} keeps {@link #PIPELINE_DEPTH} proposals in flight as a non-blocking one.
+ * Sample time shows the latency distribution till the result is known.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AsyncAuctionBenchmarks {
+
+    public static final int PROPOSERS = 8;
+    private static final int PIPELINE_DEPTH = 16;
+
+    @Param({"optimistic", "pessimistic", "stoppablePessimistic"})
+    private String type;
+
+    private final Notifier notifier = new NoopNotifier();
+
+    private Auction auction;
+    private ExecutorService writer;
+    private AsyncAuction asyncAuction;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AsyncAuctionBenchmarks.class.getName())
+                .threads(PROPOSERS)
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        auction = AuctionTypes.create(type, notifier);
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("AsyncAuction_Writer");
+            t.setDaemon(true);
+            return t;
+        });
+        asyncAuction = new AsyncAuction(AuctionTypes.create(type, notifier), writer, 256);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        writer.shutdown();
+    }
+
+    @Benchmark
+    public boolean proposeSync() {
+        return auction.propose(nextBid());
+    }
+
+    @Benchmark
+    public boolean proposeAsync() {
+        return asyncAuction.proposeAsync(nextBid()).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public void proposeAsyncPipelined() {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[PIPELINE_DEPTH];
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            results[i] = asyncAuction.proposeAsync(nextBid()).toCompletableFuture();
+        }
+        CompletableFuture.allOf(results).join();
+    }
+
+    private static Bid nextBid() {
+        long price = System.nanoTime();
+        return new Bid(price, price, price);
+    }
+}
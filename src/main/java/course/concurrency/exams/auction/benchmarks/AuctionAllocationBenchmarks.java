@@ -0,0 +1,97 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.AuctionOptimistic;
+import course.concurrency.exams.auction.AuctionStoppableOptimistic;
+import course.concurrency.exams.auction.AuctionStoppablePrimitive;
+import course.concurrency.exams.auction.Bid;
+import course.concurrency.exams.auction.Notifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation rate of the bid path, look at gc.alloc.rate.norm (bytes per operation) in the output.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuctionAllocationBenchmarks {
+
+    private static final Notifier notifier = new NoopNotifier();
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AuctionAllocationBenchmarks.class.getName())
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    // every bid is below the current one
+    @State(Scope.Thread)
+    public static class LosingState {
+        final AuctionOptimistic optimistic = new AuctionOptimistic(notifier);
+        final AuctionStoppableOptimistic stoppableOptimistic = new AuctionStoppableOptimistic(notifier);
+        final AuctionStoppablePrimitive primitive = new AuctionStoppablePrimitive(notifier);
+        long price = 0;
+
+        @Setup
+        public void setup() {
+            Bid highest = new Bid(1, 1, Long.MAX_VALUE);
+            optimistic.propose(highest);
+            stoppableOptimistic.propose(highest);
+            primitive.propose(highest);
+        }
+    }
+
+    // every bid outbids the current one
+    @State(Scope.Thread)
+    public static class WinningState {
+        final AuctionOptimistic optimistic = new AuctionOptimistic(notifier);
+        final AuctionStoppableOptimistic stoppableOptimistic = new AuctionStoppableOptimistic(notifier);
+        final AuctionStoppablePrimitive primitive = new AuctionStoppablePrimitive(notifier);
+        long price = 0;
+    }
+
+    @Benchmark
+    public boolean losingOptimistic(LosingState state) {
+        long price = ++state.price;
+        return state.optimistic.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    public boolean losingStoppableOptimistic(LosingState state) {
+        long price = ++state.price;
+        return state.stoppableOptimistic.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    public boolean losingPrimitive(LosingState state) {
+        long price = ++state.price;
+        return state.primitive.proposeRaw(price, price, price);
+    }
+
+    @Benchmark
+    public boolean winningOptimistic(WinningState state) {
+        long price = ++state.price;
+        return state.optimistic.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    public boolean winningStoppableOptimistic(WinningState state) {
+        long price = ++state.price;
+        return state.stoppableOptimistic.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    public boolean winningPrimitive(WinningState state) {
+        long price = ++state.price;
+        return state.primitive.proposeRaw(price, price, price);
+    }
+}
@@ -0,0 +1,127 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.Auction;
+import course.concurrency.exams.auction.AuctionStoppable;
+import course.concurrency.exams.auction.Bid;
+import course.concurrency.exams.auction.Notifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proposers and readers of one lot. Stoppable auctions are also measured with
+ * a thread which stops the auction in the middle of every iteration.
+ * <p>
+ * Results are written to the JSON file given as the first argument.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuctionBenchmarks {
+
+    public static final int PROPOSERS = 7;
+    public static final int READERS = 1;
+
+    private static final long STOP_AFTER_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAX_RANDOM_PRICE = 1_000_000_000L;
+
+    private static final Notifier notifier = new NoopNotifier();
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AuctionBenchmarks.class.getName())
+                .forks(1)
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 0 ? args[0] : "auction-benchmarks.json")
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @State(Scope.Group)
+    public static class AuctionState {
+        @Param({"optimistic", "pessimistic", "combining",
+                "stoppableOptimistic", "stoppablePessimistic", "stoppablePrimitive"})
+        String type;
+
+        @Param({"monotonic", "random"})
+        String prices;
+
+        Auction auction;
+        boolean monotonic;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            auction = AuctionTypes.create(type, notifier);
+            monotonic = "monotonic".equals(prices);
+        }
+    }
+
+    @State(Scope.Group)
+    public static class StoppableState {
+        @Param({"stoppableOptimistic", "stoppablePessimistic", "stoppablePrimitive"})
+        String type;
+
+        @Param({"monotonic", "random"})
+        String prices;
+
+        AuctionStoppable auction;
+        boolean monotonic;
+        long stopAt;
+        volatile boolean stopped;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            auction = AuctionTypes.createStoppable(type, notifier);
+            monotonic = "monotonic".equals(prices);
+            stopAt = System.nanoTime() + STOP_AFTER_NANOS;
+            stopped = false;
+        }
+    }
+
+    @Benchmark
+    @Group("proposeAndRead")
+    @GroupThreads(PROPOSERS)
+    public boolean propose(AuctionState state) {
+        return state.auction.propose(nextBid(state.monotonic));
+    }
+
+    @Benchmark
+    @Group("proposeAndRead")
+    @GroupThreads(READERS)
+    public Bid read(AuctionState state) {
+        return state.auction.getLatestBid();
+    }
+
+    @Benchmark
+    @Group("proposeAndStop")
+    @GroupThreads(PROPOSERS)
+    public boolean proposeUntilStopped(StoppableState state) {
+        return state.auction.propose(nextBid(state.monotonic));
+    }
+
+    @Benchmark
+    @Group("proposeAndStop")
+    @GroupThreads(READERS)
+    public Bid readAndStop(StoppableState state) {
+        if (!state.stopped && System.nanoTime() >= state.stopAt) {
+            state.stopped = true;
+            return state.auction.stopAuction();
+        }
+        return state.auction.getLatestBid();
+    }
+
+    private static Bid nextBid(boolean monotonic) {
+        long price = monotonic
+                ? System.nanoTime()
+                : ThreadLocalRandom.current().nextLong(MAX_RANDOM_PRICE);
+        return new Bid(price, price, price);
+    }
+}
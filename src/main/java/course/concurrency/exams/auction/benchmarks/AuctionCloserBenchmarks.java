@@ -0,0 +1,100 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time to schedule the close of all lots with {@link AuctionCloser} and with one
+ * {@link ScheduledThreadPoolExecutor} task per lot. Close-time lateness percentiles
+ * are printed after every iteration, once all lots are closed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class AuctionCloserBenchmarks {
+
+    private static final long MIN_DELAY_MILLIS = 500L;
+    private static final long CLOSE_WINDOW_MILLIS = 1000L;
+
+    @Param({"100000", "1000000"})
+    private int lots;
+
+    @Param({"wheel", "executor"})
+    private String closer;
+
+    private final Notifier notifier = new NoopNotifier();
+
+    private AuctionStoppable[] auctions;
+    private AuctionCloser wheel;
+    private ScheduledThreadPoolExecutor executor;
+    private LongAdder executorClosed;
+    private Histogram executorLatenessMicros;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AuctionCloserBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        auctions = new AuctionStoppable[lots];
+        for (int lot = 0; lot < lots; lot++) {
+            auctions[lot] = new AuctionStoppableOptimistic(notifier);
+        }
+        wheel = new AuctionCloser((lotId, winner) -> {});
+        executor = new ScheduledThreadPoolExecutor(1);
+        executorClosed = new LongAdder();
+        executorLatenessMicros = new Histogram();
+    }
+
+    @Benchmark
+    public void scheduleAll() {
+        for (int lot = 0; lot < lots; lot++) {
+            long delay = MIN_DELAY_MILLIS + lot % CLOSE_WINDOW_MILLIS;
+            if (closer.equals("wheel")) {
+                wheel.schedule(lot, auctions[lot], delay, TimeUnit.MILLISECONDS);
+            } else {
+                scheduleWithExecutor(auctions[lot], delay);
+            }
+        }
+    }
+
+    private void scheduleWithExecutor(AuctionStoppable auction, long delay) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        executor.schedule(() -> {
+            auction.stopAuction();
+            long lateness = System.nanoTime() - deadline;
+            executorLatenessMicros.record(TimeUnit.NANOSECONDS.toMicros(Math.max(lateness, 0)));
+            executorClosed.increment();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        boolean isWheel = closer.equals("wheel");
+        while ((isWheel ? wheel.getClosedCount() : executorClosed.sum()) < lots) {
+            Thread.sleep(10);
+        }
+        Histogram lateness = isWheel ? wheel.getLatenessMicros() : executorLatenessMicros;
+        System.out.printf("%n%s lateness, us: p50 <= %d, p99 <= %d, p99.9 <= %d, max <= %d%n", closer,
+                lateness.getPercentile(50), lateness.getPercentile(99),
+                lateness.getPercentile(99.9), lateness.getPercentile(100));
+
+        wheel.shutdown();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.Auction;
+import course.concurrency.exams.auction.Bid;
+import course.concurrency.exams.auction.Notifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One shared lot under growing number of proposers: most of random bids lose,
+ * rising bids make near-simultaneous winners.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuctionContentionBenchmarks {
+
+    private static final int[] THREADS = {1, 4, 16, 64};
+    private static final long MAX_PRICE = 1_000_000_000L;
+
+    @Param({"optimistic", "pessimistic", "combining"})
+    private String type;
+
+    private final Notifier notifier = new NoopNotifier();
+
+    private Auction auction;
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(AuctionContentionBenchmarks.class.getName())
+                    .threads(threads)
+                    .forks(1)
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        auction = AuctionTypes.create(type, notifier);
+    }
+
+    @Benchmark
+    public boolean proposeRandom() {
+        long price = ThreadLocalRandom.current().nextLong(MAX_PRICE);
+        return auction.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    public boolean proposeRising() {
+        long price = System.nanoTime();
+        return auction.propose(new Bid(price, price, price));
+    }
+}
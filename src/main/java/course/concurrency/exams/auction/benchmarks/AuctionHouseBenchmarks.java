@@ -0,0 +1,79 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.AuctionHouse;
+import course.concurrency.exams.auction.AuctionOptimistic;
+import course.concurrency.exams.auction.Bid;
+import course.concurrency.exams.auction.Notifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuctionHouseBenchmarks {
+
+    private static final long MAX_PRICE = 1_000_000L;
+
+    @Param({"1000", "100000"})
+    private int lots;
+
+    private final Notifier notifier = new NoopNotifier();
+
+    private AuctionHouse house;
+    private Map<Long, AuctionOptimistic> baseline;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AuctionHouseBenchmarks.class.getName())
+                .threads(Runtime.getRuntime().availableProcessors())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        house = new AuctionHouse(notifier, Runtime.getRuntime().availableProcessors() * 4, lots);
+        baseline = new ConcurrentHashMap<>(lots);
+        for (long lotId = 0; lotId < lots; lotId++) {
+            house.openLot(lotId);
+            baseline.put(lotId, new AuctionOptimistic(notifier));
+        }
+    }
+
+    @Benchmark
+    public boolean proposeAuctionHouse() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long lotId = random.nextLong(lots);
+        long price = random.nextLong(MAX_PRICE);
+        return house.propose(lotId, new Bid(price, lotId, price));
+    }
+
+    @Benchmark
+    public boolean proposeConcurrentHashMap() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long lotId = random.nextLong(lots);
+        long price = random.nextLong(MAX_PRICE);
+        return baseline.computeIfAbsent(lotId, id -> new AuctionOptimistic(notifier))
+                .propose(new Bid(price, lotId, price));
+    }
+
+    @Benchmark
+    public Bid readAuctionHouse() {
+        return house.getLatestBid(ThreadLocalRandom.current().nextLong(lots));
+    }
+
+    @Benchmark
+    public Bid readConcurrentHashMap() {
+        return baseline.get(ThreadLocalRandom.current().nextLong(lots)).getLatestBid();
+    }
+}
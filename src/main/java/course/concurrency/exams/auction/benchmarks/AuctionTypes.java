@@ -0,0 +1,35 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.*;
+
+/**
+ * Creates auctions by names used in benchmark params.
+ */
+public class AuctionTypes {
+
+    public static Auction create(String type, Notifier notifier) {
+        switch (type) {
+            case "optimistic":
+                return new AuctionOptimistic(notifier);
+            case "pessimistic":
+                return new AuctionPessimistic(notifier);
+            case "combining":
+                return new AuctionCombining(notifier);
+            default:
+                return createStoppable(type, notifier);
+        }
+    }
+
+    public static AuctionStoppable createStoppable(String type, Notifier notifier) {
+        switch (type) {
+            case "stoppableOptimistic":
+                return new AuctionStoppableOptimistic(notifier);
+            case "stoppablePessimistic":
+                return new AuctionStoppablePessimistic(notifier);
+            case "stoppablePrimitive":
+                return new AuctionStoppablePrimitive(notifier);
+            default:
+                throw new IllegalArgumentException("Unknown auction type: " + type);
+        }
+    }
+}
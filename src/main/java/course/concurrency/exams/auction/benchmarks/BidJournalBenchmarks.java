@@ -0,0 +1,108 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency added to an accepted bid by the journal (see p0.50 and p0.99 of the sample time),
+ * and recovery time of a journal with a million records.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BidJournalBenchmarks {
+
+    private static final long COMMIT_INTERVAL_MILLIS = 10L;
+    private static final int RECOVERED_RECORDS = 1_000_000;
+    private static final int RECOVERED_AUCTIONS = 10_000;
+
+    private static final Notifier notifier = new NoopNotifier();
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BidJournalBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @State(Scope.Benchmark)
+    public static class AuctionState {
+        Path file;
+        BidJournal journal;
+        Auction plain;
+        Auction journaled;
+
+        @Setup(Level.Iteration)
+        public void setup() throws IOException {
+            file = Files.createTempFile("bids", ".journal");
+            journal = new BidJournal(file, COMMIT_INTERVAL_MILLIS);
+            plain = new AuctionOptimistic(notifier);
+            journaled = new JournaledAuction(1, new AuctionOptimistic(notifier), journal, notifier);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            journal.close();
+            Files.delete(file);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RecoveryState {
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            file = Files.createTempFile("bids", ".journal");
+            try (BidJournal journal = new BidJournal(file, COMMIT_INTERVAL_MILLIS)) {
+                for (int i = 0; i < RECOVERED_RECORDS; i++) {
+                    journal.append(i % RECOVERED_AUCTIONS, new Bid(i, i, i));
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public boolean acceptedWithoutJournal(AuctionState state) {
+        long price = System.nanoTime();
+        return state.plain.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public boolean acceptedWithJournal(AuctionState state) {
+        long price = System.nanoTime();
+        return state.journaled.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Map<Long, Bid> recoverMillionRecords(RecoveryState state) {
+        try (BidJournal journal = new BidJournal(state.file, COMMIT_INTERVAL_MILLIS)) {
+            return journal.getRecoveredBids();
+        }
+    }
+}
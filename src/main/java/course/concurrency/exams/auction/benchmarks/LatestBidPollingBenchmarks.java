@@ -0,0 +1,72 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.Auction;
+import course.concurrency.exams.auction.Bid;
+import course.concurrency.exams.auction.BidSnapshot;
+import course.concurrency.exams.auction.Notifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pollers of {@link Auction#getLatestBidIfChanged} while a writer keeps outbidding.
+ * Poller throughput is expected to grow with the number of pollers.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LatestBidPollingBenchmarks {
+
+    private static final int[] POLLERS = {1, 2, 4, 8};
+    private static final int WRITERS = 1;
+
+    @Param({"optimistic", "pessimistic", "stoppablePessimistic", "stoppablePrimitive"})
+    private String type;
+
+    private final Notifier notifier = new NoopNotifier();
+
+    private Auction auction;
+
+    @State(Scope.Thread)
+    public static class Poller {
+        long version = 0;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int pollers : POLLERS) {
+            Options options = new OptionsBuilder()
+                    .include(LatestBidPollingBenchmarks.class.getName())
+                    .threadGroups(pollers, WRITERS) // group methods in alphabetical order
+                    .forks(1)
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        auction = AuctionTypes.create(type, notifier);
+    }
+
+    @Benchmark
+    @Group("pollWhileProposing")
+    public BidSnapshot poll(Poller poller) {
+        BidSnapshot snapshot = auction.getLatestBidIfChanged(poller.version);
+        if (snapshot != null) {
+            poller.version = snapshot.getVersion();
+        }
+        return snapshot;
+    }
+
+    @Benchmark
+    @Group("pollWhileProposing")
+    public boolean propose() {
+        long price = System.nanoTime();
+        return auction.propose(new Bid(price, price, price));
+    }
+}
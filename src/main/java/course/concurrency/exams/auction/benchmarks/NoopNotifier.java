@@ -0,0 +1,19 @@
+package course.concurrency.exams.auction.benchmarks;
+
+import course.concurrency.exams.auction.Bid;
+import course.concurrency.exams.auction.Notifier;
+
+/**
+ * Notifier that sends nothing, so benchmarks measure the auction itself
+ * and not the sleeping tasks of {@link Notifier}.
+ */
+public class NoopNotifier extends Notifier {
+
+    @Override
+    public void sendOutdatedMessage(Bid bid) {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
@@ -4,12 +4,15 @@ import org.springframework.util.StringUtils;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
 public class MountTableRefresherService {
 
+    private static final long ROUTER_CLIENTS_MAX_COUNT = 1000;
+
     private Others.RouterStore routerStore = new Others.RouterStore();
     private long cacheUpdateTimeout;
 
@@ -25,14 +28,35 @@ public class MountTableRefresherService {
      */
     private ScheduledExecutorService clientCacheCleanerScheduler;
 
+    private volatile Others.MountTable mountTable;
+
     private Function<String, Others.MountTableManager> managerFactory = Others.MountTableManager::new;
 
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private static final int DEFAULT_REFRESH_PARALLELISM = 16;
+
+    // executors not terminated yet, the current one and those replaced by setRefreshParallelism
+    private final AtomicInteger liveExecutors = new AtomicInteger();
+    private volatile boolean stopped;
+
+    /**
+     * Runs refresh tasks, at most refreshParallelism at once, the others wait in the queue.
+     * Idle threads time out, so the service holds no threads between refreshes.
+     */
+    private volatile ThreadPoolExecutor executor = newRefreshExecutor(DEFAULT_REFRESH_PARALLELISM, Integer.MAX_VALUE);
+
+    /**
+     * Cancels refresh tasks running longer than cacheUpdateTimeout.
+     * Stopped once the service is stopped and all refresh executors have terminated.
+     */
+    private final ScheduledThreadPoolExecutor timeoutScheduler = newTimeoutScheduler();
 
     public void serviceInit()  {
         long routerClientMaxLiveTime = 15L;
         this.cacheUpdateTimeout = 10L;
         routerClientsCache = new Others.LoadingCache<String, Others.RouterClient>();
+        routerClientsCache.setLoader(addr -> new Others.RouterClient());
+        routerClientsCache.setMaximumSize(ROUTER_CLIENTS_MAX_COUNT);
+        routerClientsCache.setExpireAfterAccess(routerClientMaxLiveTime);
         routerStore.getCachedRecords().stream().map(Others.RouterState::getAdminAddress)
                 .forEach(addr -> routerClientsCache.add(addr, new Others.RouterClient()));
 
@@ -41,15 +65,18 @@ public class MountTableRefresherService {
 
     public void serviceStop() {
         clientCacheCleanerScheduler.shutdown();
+        stopped = true;
+        // refreshes already queued still run and need their timeouts, the last executor to terminate stops them
+        executor.shutdown();
         // remove and close all admin clients
-        routerClientsCache.cleanUp();
+        routerClientsCache.invalidateAll();
     }
 
     private void initClientCacheCleaner(long routerClientMaxLiveTime) {
         ThreadFactory tf = new ThreadFactory() {
             @Override
             public Thread newThread(Runnable r) {
-                Thread t = new Thread();
+                Thread t = new Thread(r);
                 t.setName("MountTableRefresh_ClientsCacheCleaner");
                 t.setDaemon(true);
                 return t;
@@ -71,88 +98,213 @@ public class MountTableRefresherService {
      * Refresh mount table cache of this router as well as all other routers.
      */
     public void refresh()  {
-        List<String> addresses = getAddresses();
-
-        List<CompletableFuture<Result>> refreshingTasks = addresses.stream()
-                .map(a -> {
-                    String address = isLocalAdmin(a) ? "local" : a;
-                    Others.MountTableManager manager = managerFactory.apply(address);
-                    return CompletableFuture.supplyAsync(() -> Result.complete(a, manager.refresh()), executor)
-                            .completeOnTimeout(Result.expired(a), cacheUpdateTimeout, TimeUnit.MILLISECONDS)
-                            .exceptionally(e -> Result.complete(a, false));
-                })
-                .collect(Collectors.toList());
-
+        Refresh refresh = startRefresh();
         try {
-            CompletableFuture.allOf(refreshingTasks.toArray(new CompletableFuture[0])).thenAccept(_void -> {
-                        List<Result> results = refreshingTasks.stream()
-                                .map(CompletableFuture::join)
-                                .collect(Collectors.toList());
-                        removeOutdatedFromCache(results);
-                        logResults(results);
-                    })
-                    .get();
+            refresh.report.get();
         } catch (InterruptedException e) {
             log("Mount table cache refresher was interrupted.");
-            executor.shutdownNow();
+            // only the tasks of this refresh are cancelled, the pool stays for the next one
+            refresh.cancel();
+            Thread.currentThread().interrupt();
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private List<String> getAddresses() {
-        return routerStore.getCachedRecords().stream()
-                .map(Others.RouterState::getAdminAddress)
-                .filter(StringUtils::hasText)
-                .collect(Collectors.toList());
+    /**
+     * Refreshes the routers without waiting for them, the report is completed when all of them are done.
+     * Cancelling it cancels the refreshes still running.
+     */
+    public CompletableFuture<RefreshReport> refreshAsync() {
+        return startRefresh().report;
     }
 
-    private void logResults(List<Result> results) {
-        if (results.stream().anyMatch(Result::isExpired)) {
-            log("Not all router admins updated their cache");
+    private Refresh startRefresh() {
+        List<Others.RouterState> routers = getRouters();
+        Others.MountTable table = mountTable;
+        long version = table == null ? -1 : table.getVersion();
+        ThreadPoolExecutor executor = this.executor;
+
+        Refresh refresh = new Refresh(routers.size());
+        long deltaBytes = 0;
+        for (Others.RouterState router : routers) {
+            if (table != null && router.getMountTableVersion() == version) {
+                continue; // up to date
+            }
+            String a = router.getAdminAddress();
+            String address = isLocalAdmin(a) ? "local" : a;
+            // the client of a router in use is read on every refresh, so it does not expire after access
+            routerClientsCache.get(a);
+            Others.MountTableDelta delta = table == null ? null : table.getDelta(router.getMountTableVersion());
+            if (delta != null) {
+                deltaBytes += delta.getSizeBytes();
+            }
+            refresh.submit(new RefreshTask(refresh, router, managerFactory.apply(address), delta,
+                    cacheUpdateTimeout), executor);
         }
+        if (table != null) {
+            log(String.format("Mount table version=%d pushed to %d of %d routers, deltaBytes=%d",
+                    version, refresh.taskCount, routers.size(), deltaBytes));
+        }
+        refresh.submitted();
+        return refresh;
+    }
 
-        Map<Boolean, List<Result>> resultsBySuccess = results.stream()
-                .collect(Collectors.groupingBy(result -> result.isSucceeded()));
+    /**
+     * Refresh tasks of one refresh. Results are collected as the tasks finish, without a list of them,
+     * and the task which finishes last completes the report.
+     */
+    private class Refresh {
+        private final long start = System.nanoTime();
+        private final RefreshTask[] tasks;
+        private volatile int taskCount;
+        // unfinished tasks and one more until all of them are submitted
+        private final AtomicInteger remaining = new AtomicInteger(1);
+        private final CompletableFuture<RefreshReport> report = new CompletableFuture<>();
+
+        Refresh(int maxTaskCount) {
+            this.tasks = new RefreshTask[maxTaskCount];
+            report.whenComplete((r, e) -> {
+                if (e instanceof CancellationException) {
+                    cancel();
+                }
+            });
+        }
 
-        log(String.format(
-                "Mount table entries cache refresh successCount=%d,failureCount=%d",
-                resultsBySuccess.getOrDefault(true, Collections.emptyList()).size(),
-                resultsBySuccess.getOrDefault(false, Collections.emptyList()).size()));
-    }
+        void submit(RefreshTask task, Executor executor) {
+            remaining.incrementAndGet();
+            tasks[taskCount] = task;
+            taskCount++; // the only writer
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.cancel(false); // the queue is full, fails the task
+            }
+        }
 
-    private static class Result {
-        private enum Status { SUCCEEDED, FAILED, EXPIRED }
+        void submitted() {
+            arrive();
+        }
 
-        final String address;
-        private final Status status;
+        void finished(RefreshReport.RouterResult result) {
+            if (!result.isSucceeded()) {
+                removeFromCache(result.getAddress());
+            }
+            arrive();
+        }
 
-        public static Result complete(String address, boolean success) {
-            return new Result(address, success ? Status.SUCCEEDED : Status.FAILED);
+        void cancel() {
+            int count = taskCount;
+            for (int i = 0; i < count; i++) {
+                tasks[i].cancel(true);
+            }
         }
 
-        public static Result expired(String address) {
-            return new Result(address, Status.EXPIRED);
+        private void arrive() {
+            if (remaining.decrementAndGet() > 0) {
+                return;
+            }
+            RefreshReport.RouterResult[] results = new RefreshReport.RouterResult[taskCount];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = tasks[i].result;
+            }
+            RefreshReport report = new RefreshReport(results, System.nanoTime() - start);
+            logResults(report);
+            this.report.complete(report);
         }
+    }
 
-        private Result(String address, Status status) {
-            this.address = address;
-            this.status = status;
+    /**
+     * Refresh of one router: its timeout starts when the task starts rather than when it is queued,
+     * and cancels the task, interrupting the refresh. A router which has applied the delta
+     * is marked with its version.
+     */
+    private class RefreshTask extends FutureTask<Boolean> {
+        private final Refresh refresh;
+        private final Others.RouterState router;
+        private final String address;
+        private final Others.MountTableDelta delta;
+        private final long timeoutMillis;
+        private RefreshReport.RouterResult result;
+        private volatile boolean timedOut;
+        private volatile long startNanos;
+        private volatile ScheduledFuture<?> timeout;
+
+        RefreshTask(Refresh refresh, Others.RouterState router, Others.MountTableManager manager,
+                    Others.MountTableDelta delta, long timeoutMillis) {
+            super(() -> delta == null ? manager.refresh() : manager.refresh(delta));
+            this.refresh = refresh;
+            this.router = router;
+            this.address = router.getAdminAddress();
+            this.delta = delta;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return; // cancelled while queued
+            }
+            startNanos = System.nanoTime();
+            try {
+                timeout = timeoutScheduler.schedule(() -> {
+                    timedOut = true;
+                    cancel(true);
+                }, timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                cancel(false); // would run without a timeout, fails the task
+                return;
+            }
+            super.run();
         }
 
-        public boolean isSucceeded() {
-            return status == Status.SUCCEEDED;
+        @Override
+        protected void done() {
+            ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            result = new RefreshReport.RouterResult(address, status(), latencyNanos());
+            refresh.finished(result);
+        }
+
+        private RefreshReport.Status status() {
+            if (isCancelled()) {
+                return timedOut ? RefreshReport.Status.EXPIRED : RefreshReport.Status.FAILED;
+            }
+            try {
+                if (!get()) {
+                    return RefreshReport.Status.FAILED;
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                return RefreshReport.Status.FAILED;
+            }
+            if (delta != null) {
+                router.setMountTableVersion(delta.getToVersion());
+            }
+            return RefreshReport.Status.SUCCEEDED;
         }
 
-        public boolean isExpired() {
-            return status == Status.EXPIRED;
+        private long latencyNanos() {
+            long startNanos = this.startNanos;
+            return startNanos == 0 ? 0 : System.nanoTime() - startNanos;
         }
     }
 
-    private void removeOutdatedFromCache(List<Result> results) {
-        results.stream()
-                .filter(result -> !result.isSucceeded())
-                .forEach(result -> removeFromCache(result.address));
+    private List<Others.RouterState> getRouters() {
+        return routerStore.getCachedRecords().stream()
+                .filter(router -> StringUtils.hasText(router.getAdminAddress()))
+                .collect(Collectors.toList());
+    }
+
+    private void logResults(RefreshReport report) {
+        if (report.getExpiredCount() > 0) {
+            log("Not all router admins updated their cache");
+        }
+
+        log(String.format(
+                "Mount table entries cache refresh successCount=%d,failureCount=%d",
+                report.getSuccessCount(), report.getFailureCount()));
     }
 
     private void removeFromCache(String adminAddress) {
@@ -167,10 +319,28 @@ public class MountTableRefresherService {
         System.out.println(message);
     }
 
+    /**
+     * Limits refresh tasks running at once, the others wait in a queue of the given capacity.
+     * Tasks which do not fit in the queue fail. Refreshes already running finish on the old threads.
+     */
+    public void setRefreshParallelism(int parallelism, int queueCapacity) {
+        ThreadPoolExecutor replaced = executor;
+        executor = newRefreshExecutor(parallelism, queueCapacity);
+        replaced.shutdown();
+    }
+
     public void setCacheUpdateTimeout(long cacheUpdateTimeout) {
         this.cacheUpdateTimeout = cacheUpdateTimeout;
     }
-    public void setRouterClientsCache(Others.LoadingCache cache) {
+    /**
+     * Versioned mount table: only the routers behind it are refreshed, with the changes they miss.
+     * Without it every refresh refreshes every router.
+     */
+    public void setMountTable(Others.MountTable mountTable) {
+        this.mountTable = mountTable;
+    }
+
+    public void setRouterClientsCache(Others.LoadingCache<String, Others.RouterClient> cache) {
         this.routerClientsCache = cache;
     }
 
@@ -178,7 +348,40 @@ public class MountTableRefresherService {
         this.routerStore = routerStore;
     }
 
-    void setManagerFactory(Function<String, Others.MountTableManager> managerFactory) {
+    public void setManagerFactory(Function<String, Others.MountTableManager> managerFactory) {
         this.managerFactory = managerFactory;
     }
+
+    private ThreadPoolExecutor newRefreshExecutor(int parallelism, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        liveExecutors.incrementAndGet();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r);
+            t.setName("MountTableRefresh_Worker-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }) {
+            @Override
+            protected void terminated() {
+                // replaced executors may still be running tasks of earlier refreshes
+                if (liveExecutors.decrementAndGet() == 0 && stopped) {
+                    timeoutScheduler.shutdown();
+                }
+            }
+        };
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ScheduledThreadPoolExecutor newTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r);
+            t.setName("MountTableRefresh_Timeouts");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setRemoveOnCancelPolicy(true); // most refreshes finish in time
+        return scheduler;
+    }
 }
\ No newline at end of file
@@ -1,27 +1,402 @@
 package course.concurrency.exams.refactoring;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 public class Others {
 
+    /**
+     * Cache of values created by the loader on demand.
+     * <p>
+     * An entry expires when it was not read for {@code expireAfterAccess} or was written
+     * {@code expireAfterWrite} ago, zero turns either off. An entry read {@code refreshAfterWrite}
+     * after it was written is reloaded on the refresh executor, readers get the old value meanwhile,
+     * so entries in use are refreshed before they expire.
+     * <p>
+     * Beyond {@code maximumSize} entries the least recently used one is evicted, by segmented LRU:
+     * new entries go to the probation segment and move to the protected one when read again,
+     * so a scan of keys read once does not push out the keys read often. Reads reorder entries
+     * only if the eviction lock is free, a busy lock is not waited for.
+     * <p>
+     * Settings are set before the cache is used.
+     */
     public static class LoadingCache<K, V> {
-        Map<K,V> map = new ConcurrentHashMap<>();
+
+        private static final double PROTECTED_SHARE = 0.8;
+
+        private final Map<K, Node<K, V>> map = new ConcurrentHashMap<>();
+        private final Map<K, CompletableFuture<Node<K, V>>> loads = new ConcurrentHashMap<>();
+
+        private Function<K, V> loader;
+        private long maximumSize = Long.MAX_VALUE;
+        private long expireAfterAccessNanos;
+        private long expireAfterWriteNanos;
+        private long refreshAfterWriteNanos;
+        private Executor refreshExecutor = ForkJoinPool.commonPool();
+        private BiConsumer<K, V> removalListener = (key, value) -> {};
+        private LongSupplier clock = System::nanoTime;
+
+        // guarded by evictionLock
+        private final ReentrantLock evictionLock = new ReentrantLock();
+        private final Node<K, V> probation = Node.sentinel();
+        private final Node<K, V> protectedSegment = Node.sentinel();
+        private long size;
+        private long protectedSize;
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder loadFailures = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder expirations = new LongAdder();
+        private final LongAdder refreshes = new LongAdder();
+
+        public void setLoader(Function<K, V> loader) {
+            this.loader = loader;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public void setExpireAfterAccess(long millis) {
+            this.expireAfterAccessNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        public void setExpireAfterWrite(long millis) {
+            this.expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        public void setRefreshAfterWrite(long millis) {
+            this.refreshAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        public void setRefreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+        }
+
+        /**
+         * Called with every entry which is removed, replaced, expired or evicted.
+         */
+        public void setRemovalListener(BiConsumer<K, V> removalListener) {
+            this.removalListener = removalListener;
+        }
+
+        void setClock(LongSupplier nanoClock) {
+            this.clock = nanoClock;
+        }
+
+        /**
+         * Value of the key, loaded if it is absent or expired. Concurrent loads of a key are done once.
+         * Returns null if there is no loader and no value.
+         */
+        public V get(K key) {
+            long now = clock.getAsLong();
+            Node<K, V> node = map.get(key);
+            if (node != null && !isExpired(node, now)) {
+                V value = node.value; // read before a refresh may start
+                onHit(node, now);
+                return value;
+            }
+            misses.increment();
+            if (loader == null) {
+                return null;
+            }
+            CompletableFuture<Node<K, V>> load = new CompletableFuture<>();
+            CompletableFuture<Node<K, V>> inFlight = loads.putIfAbsent(key, load);
+            if (inFlight != null) {
+                return awaitLoad(inFlight).value;
+            }
+            try {
+                Node<K, V> loaded = load(key, now);
+                load.complete(loaded);
+                return loaded.value;
+            } catch (RuntimeException e) {
+                loadFailures.increment();
+                load.completeExceptionally(e);
+                throw e;
+            } finally {
+                loads.remove(key, load);
+            }
+        }
+
+        // the loader runs outside of the map, so other keys of the same bin are not blocked meanwhile
+        private Node<K, V> load(K key, long now) {
+            Node<K, V> current = map.get(key);
+            if (current != null && !isExpired(current, now)) {
+                return current; // loaded by another thread before this load started
+            }
+            Node<K, V> loaded = new Node<>(key, loader.apply(key), now);
+            Node<K, V> replaced = map.put(key, loaded);
+            if (replaced != null) {
+                if (isExpired(replaced, now)) {
+                    expirations.increment();
+                }
+                unlink(replaced);
+            }
+            link(loaded);
+            return loaded;
+        }
+
+        private static <N> N awaitLoad(CompletableFuture<N> load) {
+            try {
+                return load.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        public V getIfPresent(K key) {
+            long now = clock.getAsLong();
+            Node<K, V> node = map.get(key);
+            if (node == null || isExpired(node, now)) {
+                misses.increment();
+                return null;
+            }
+            V value = node.value;
+            onHit(node, now);
+            return value;
+        }
 
         public void add(K key, V value) {
-            map.put(key, value);
+            Node<K, V> node = new Node<>(key, value, clock.getAsLong());
+            Node<K, V> replaced = map.put(key, node);
+            if (replaced != null) {
+                unlink(replaced);
+            }
+            link(node);
+        }
+
+        public void invalidate(K key) {
+            Node<K, V> node = map.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        }
+
+        public void invalidateAll() {
+            for (K key : map.keySet()) {
+                invalidate(key);
+            }
+        }
+
+        /**
+         * Removes expired entries, the others stay.
+         */
+        public void cleanUp() {
+            long now = clock.getAsLong();
+            map.forEach((key, node) -> {
+                if (isExpired(node, now) && map.remove(key, node)) {
+                    expirations.increment();
+                    unlink(node);
+                }
+            });
+        }
+
+        public long size() {
+            return map.size();
+        }
+
+        public long getHitCount() {
+            return hits.sum();
+        }
+
+        public long getMissCount() {
+            return misses.sum();
+        }
+
+        public double getHitRatio() {
+            long hits = this.hits.sum();
+            long requests = hits + misses.sum();
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        public long getLoadFailureCount() {
+            return loadFailures.sum();
+        }
+
+        public long getEvictionCount() {
+            return evictions.sum();
+        }
+
+        public long getExpirationCount() {
+            return expirations.sum();
+        }
+
+        public long getRefreshCount() {
+            return refreshes.sum();
+        }
+
+        private boolean isExpired(Node<K, V> node, long now) {
+            return (expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos)
+                    || (expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos);
+        }
+
+        private void onHit(Node<K, V> node, long now) {
+            hits.increment();
+            node.accessTime = now;
+            if (refreshAfterWriteNanos > 0 && loader != null && now - node.writeTime >= refreshAfterWriteNanos
+                    && node.refreshing.compareAndSet(false, true)) {
+                refreshExecutor.execute(() -> refresh(node));
+            }
+            if (evictionLock.tryLock()) { // reordering may be skipped, the entry is still there
+                try {
+                    if (node.linked) {
+                        onAccess(node);
+                    }
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+
+        // the value is swapped under the same lock as the node is retired, so the listener gets every value once:
+        // the old one here and the new one on removal, or the new one here if the node was removed meanwhile
+        private void refresh(Node<K, V> node) {
+            try {
+                V value = loader.apply(node.key);
+                V released;
+                evictionLock.lock();
+                try {
+                    if (node.retired) {
+                        released = value;
+                    } else {
+                        released = node.value;
+                        node.value = value;
+                        node.writeTime = clock.getAsLong();
+                        refreshes.increment();
+                    }
+                } finally {
+                    evictionLock.unlock();
+                }
+                removalListener.accept(node.key, released);
+            } catch (RuntimeException e) {
+                loadFailures.increment(); // the old value stays until it expires
+            } finally {
+                node.refreshing.set(false);
+            }
+        }
+
+        private void link(Node<K, V> node) {
+            List<Node<K, V>> evicted = new ArrayList<>();
+            evictionLock.lock();
+            try {
+                if (node.retired || node.linked) {
+                    return; // removed before it was linked, or loaded by another thread
+                }
+                node.linked = true;
+                node.inProtected = false;
+                probation.append(node);
+                size++;
+                while (size > maximumSize) {
+                    Node<K, V> victim = probation.next != probation ? probation.next : protectedSegment.next;
+                    remove(victim);
+                    if (map.remove(victim.key, victim)) {
+                        evicted.add(victim);
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+            for (Node<K, V> victim : evicted) {
+                evictions.increment();
+                removalListener.accept(victim.key, victim.value);
+            }
+        }
+
+        private void unlink(Node<K, V> node) {
+            V value;
+            evictionLock.lock();
+            try {
+                node.retired = true;
+                if (node.linked) {
+                    remove(node);
+                }
+                value = node.value; // not swapped by a refresh any more
+            } finally {
+                evictionLock.unlock();
+            }
+            removalListener.accept(node.key, value);
+        }
+
+        // under evictionLock
+        private void onAccess(Node<K, V> node) {
+            node.unlinkFromList();
+            if (!node.inProtected) {
+                node.inProtected = true;
+                protectedSize++;
+            }
+            protectedSegment.append(node);
+            long protectedMaximum = (long) (maximumSize * PROTECTED_SHARE);
+            while (protectedSize > protectedMaximum && protectedSegment.next != protectedSegment) {
+                Node<K, V> demoted = protectedSegment.next;
+                demoted.unlinkFromList();
+                demoted.inProtected = false;
+                protectedSize--;
+                probation.append(demoted);
+            }
         }
 
-        public void invalidate(String address) {
-            map.remove(address);
+        // under evictionLock
+        private void remove(Node<K, V> node) {
+            node.unlinkFromList();
+            node.linked = false;
+            node.retired = true;
+            size--;
+            if (node.inProtected) {
+                protectedSize--;
+            }
         }
 
-        public void cleanUp() { map.clear(); }
+        private static class Node<K, V> {
+            private final K key;
+            private volatile V value;
+            private volatile long writeTime;
+            private volatile long accessTime;
+            private final AtomicBoolean refreshing = new AtomicBoolean();
+
+            // guarded by evictionLock
+            private Node<K, V> prev = this;
+            private Node<K, V> next = this;
+            private boolean linked;
+            private boolean retired;
+            private boolean inProtected;
+
+            Node(K key, V value, long now) {
+                this.key = key;
+                this.value = value;
+                this.writeTime = now;
+                this.accessTime = now;
+            }
+
+            static <K, V> Node<K, V> sentinel() {
+                return new Node<>(null, null, 0);
+            }
 
+            // this is a sentinel, the node becomes the most recent one
+            void append(Node<K, V> node) {
+                node.prev = prev;
+                node.next = this;
+                prev.next = node;
+                prev = node;
+            }
+
+            void unlinkFromList() {
+                prev.next = next;
+                next.prev = prev;
+                prev = this;
+                next = this;
+            }
+        }
     }
 
     public static class RouterClient {
@@ -31,6 +406,7 @@ public class Others {
     public static class RouterState {
         private static AtomicInteger counter = new AtomicInteger(0);
         private String adminAddress;
+        private volatile long mountTableVersion = -1;
 
         public RouterState(String address) {
             this.adminAddress = address + counter.incrementAndGet();
@@ -39,6 +415,17 @@ public class Others {
         public String getAdminAddress() {
             return adminAddress;
         }
+
+        /**
+         * Version of the mount table applied by the router, -1 if unknown.
+         */
+        public long getMountTableVersion() {
+            return mountTableVersion;
+        }
+
+        public void setMountTableVersion(long mountTableVersion) {
+            this.mountTableVersion = mountTableVersion;
+        }
     }
 
     public static class RouterStore {
@@ -59,5 +446,148 @@ public class Others {
         public boolean refresh() {
             return ThreadLocalRandom.current().nextBoolean();
         }
+
+        /**
+         * Applies the changes of the mount table on the router.
+         */
+        public boolean refresh(MountTableDelta delta) {
+            return refresh();
+        }
+    }
+
+    /**
+     * Mount points of the routers, every change increments the version.
+     * <p>
+     * The last {@code maxLogSize} changes are kept, so a router which has applied one of the recent versions
+     * gets only the changes after it, a router further behind gets the whole table.
+     */
+    public static class MountTable {
+        private static final int DEFAULT_MAX_LOG_SIZE = 1000;
+
+        private final int maxLogSize;
+
+        // guarded by this
+        private long version;
+        private final Map<String, String> entries = new TreeMap<>();
+        private final ArrayDeque<MountTableChange> log = new ArrayDeque<>();
+
+        public MountTable() {
+            this(DEFAULT_MAX_LOG_SIZE);
+        }
+
+        public MountTable(int maxLogSize) {
+            this.maxLogSize = maxLogSize;
+        }
+
+        public synchronized long getVersion() {
+            return version;
+        }
+
+        public synchronized void put(String path, String destination) {
+            entries.put(path, destination);
+            append(new MountTableChange(path, destination));
+        }
+
+        public synchronized void remove(String path) {
+            if (entries.remove(path) != null) {
+                append(new MountTableChange(path, null));
+            }
+        }
+
+        private void append(MountTableChange change) {
+            version++;
+            log.addLast(change);
+            if (log.size() > maxLogSize) {
+                log.removeFirst();
+            }
+        }
+
+        /**
+         * Changes from the given version to the current one, the whole table if the log does not reach back to it.
+         */
+        public synchronized MountTableDelta getDelta(long fromVersion) {
+            long oldestLogged = version - log.size(); // a router at it needs all of the log
+            if (fromVersion < oldestLogged || fromVersion > version) {
+                List<MountTableChange> all = new ArrayList<>(entries.size());
+                entries.forEach((path, destination) -> all.add(new MountTableChange(path, destination)));
+                return new MountTableDelta(fromVersion, version, true, all);
+            }
+            List<MountTableChange> changes = new ArrayList<>((int) (version - fromVersion));
+            Iterator<MountTableChange> descending = log.descendingIterator();
+            for (long v = version; v > fromVersion; v--) {
+                changes.add(descending.next());
+            }
+            Collections.reverse(changes);
+            return new MountTableDelta(fromVersion, version, false, changes);
+        }
+    }
+
+    public static class MountTableChange {
+        private final String path;
+        private final String destination;
+
+        public MountTableChange(String path, String destination) {
+            this.path = path;
+            this.destination = destination;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Null if the mount point is removed.
+         */
+        public String getDestination() {
+            return destination;
+        }
+
+        public boolean isRemoval() {
+            return destination == null;
+        }
+    }
+
+    public static class MountTableDelta {
+        private final long fromVersion;
+        private final long toVersion;
+        private final boolean full;
+        private final List<MountTableChange> changes;
+
+        public MountTableDelta(long fromVersion, long toVersion, boolean full, List<MountTableChange> changes) {
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+            this.full = full;
+            this.changes = changes;
+        }
+
+        public long getFromVersion() {
+            return fromVersion;
+        }
+
+        public long getToVersion() {
+            return toVersion;
+        }
+
+        /**
+         * True if the changes are the whole table, which replaces the one of the router.
+         */
+        public boolean isFull() {
+            return full;
+        }
+
+        public List<MountTableChange> getChanges() {
+            return changes;
+        }
+
+        /**
+         * Approximate size on the wire: characters of paths and destinations.
+         */
+        public long getSizeBytes() {
+            long size = 0;
+            for (MountTableChange change : changes) {
+                size += change.getPath().length() + (change.isRemoval() ? 0 : change.getDestination().length());
+            }
+            return size;
+        }
     }
 }
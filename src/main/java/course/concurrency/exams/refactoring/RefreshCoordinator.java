@@ -0,0 +1,153 @@
+package course.concurrency.exams.refactoring;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Merges refresh requests of {@link MountTableRefresherService} into shared refresh cycles.
+ * <p>
+ * A cycle starts {@link #setDebounceMillis debounce} after the first request waiting for it, and all
+ * requests which come until then get its report. At most one cycle runs at once: the requests which
+ * come while it runs wait for the next one, as the running one could have missed their changes.
+ */
+public class RefreshCoordinator {
+
+    private final MountTableRefresherService service;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("MountTableRefresh_Coordinator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile long debounceMillis;
+
+    // guarded by this
+    private CompletableFuture<RefreshReport> pending;
+    private long pendingSince;
+    private boolean running;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder cycleCount = new LongAdder();
+    private final LongAdder answeredCount = new LongAdder();
+    private final LongAdder latencySumNanos = new LongAdder();
+    private final LongAccumulator latencyMaxNanos = new LongAccumulator(Math::max, 0);
+
+    public RefreshCoordinator(MountTableRefresherService service) {
+        this.service = service;
+    }
+
+    /**
+     * Joins the next refresh cycle. Cancelling the returned future does not cancel the cycle.
+     */
+    public CompletableFuture<RefreshReport> requestRefresh() {
+        long start = System.nanoTime();
+        requestCount.increment();
+        CompletableFuture<RefreshReport> cycle;
+        synchronized (this) {
+            cycle = pending;
+            if (cycle == null) {
+                cycle = pending = new CompletableFuture<>();
+                pendingSince = start;
+                if (!running) {
+                    schedule(debounceMillis);
+                }
+            }
+        }
+        return cycle.whenComplete((report, e) -> recordLatency(System.nanoTime() - start));
+    }
+
+    private void recordLatency(long latencyNanos) {
+        answeredCount.increment();
+        latencySumNanos.add(latencyNanos);
+        latencyMaxNanos.accumulate(latencyNanos);
+    }
+
+    private void schedule(long delayMillis) {
+        try {
+            scheduler.schedule(this::startCycle, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending.completeExceptionally(e); // shut down
+            pending = null;
+        }
+    }
+
+    private void startCycle() {
+        CompletableFuture<RefreshReport> cycle;
+        synchronized (this) {
+            cycle = pending;
+            pending = null;
+            running = true;
+        }
+        cycleCount.increment();
+        CompletableFuture<RefreshReport> report;
+        try {
+            report = service.refreshAsync();
+        } catch (RuntimeException e) {
+            report = CompletableFuture.failedFuture(e);
+        }
+        report.whenComplete((r, e) -> {
+            if (e == null) {
+                cycle.complete(r);
+            } else {
+                cycle.completeExceptionally(e);
+            }
+            finishCycle();
+        });
+    }
+
+    // the requests which came during the cycle have waited for their debounce already
+    private synchronized void finishCycle() {
+        running = false;
+        if (pending != null) {
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pendingSince);
+            schedule(Math.max(0, debounceMillis - waitedMillis));
+        }
+    }
+
+    /**
+     * Stops starting new cycles: the one already scheduled still runs, the requests after it fail.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    public void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getCycleCount() {
+        return cycleCount.sum();
+    }
+
+    /**
+     * Refresh cycles saved by merging requests.
+     */
+    public long getCoalescedCount() {
+        return getRequestCount() - getCycleCount();
+    }
+
+    /**
+     * Requests which have got the report of their cycle or its failure.
+     */
+    public long getAnsweredCount() {
+        return answeredCount.sum();
+    }
+
+    /**
+     * Average nanoseconds from the request to the report of its cycle, debounce included.
+     */
+    public long getMeanLatencyNanos() {
+        long answered = answeredCount.sum();
+        return answered == 0 ? 0 : latencySumNanos.sum() / answered;
+    }
+
+    public long getMaxLatencyNanos() {
+        return latencyMaxNanos.get();
+    }
+}
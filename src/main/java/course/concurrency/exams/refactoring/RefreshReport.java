@@ -0,0 +1,124 @@
+package course.concurrency.exams.refactoring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one refresh cycle of the mount table caches of the routers.
+ */
+public class RefreshReport {
+
+    public enum Status { SUCCEEDED, FAILED, EXPIRED }
+
+    /**
+     * Outcome of the refresh of one router.
+     */
+    public static class RouterResult {
+        private final String address;
+        private final Status status;
+        private final long latencyNanos;
+
+        RouterResult(String address, Status status, long latencyNanos) {
+            this.address = address;
+            this.status = status;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isSucceeded() {
+            return status == Status.SUCCEEDED;
+        }
+
+        public boolean isExpired() {
+            return status == Status.EXPIRED;
+        }
+
+        /**
+         * Nanoseconds from the start of the refresh of the router to its end, zero if it has not started.
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return address + "=" + status + "(" + latencyNanos + "ns)";
+        }
+    }
+
+    private final List<RouterResult> results;
+    private final int successCount;
+    private final int expiredCount;
+    private final long durationNanos;
+
+    RefreshReport(RouterResult[] results, long durationNanos) {
+        int successCount = 0;
+        int expiredCount = 0;
+        for (RouterResult result : results) {
+            if (result.isSucceeded()) {
+                successCount++;
+            } else if (result.isExpired()) {
+                expiredCount++;
+            }
+        }
+        this.results = Collections.unmodifiableList(Arrays.asList(results));
+        this.successCount = successCount;
+        this.expiredCount = expiredCount;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * Results of the refreshed routers in the order of the router store.
+     */
+    public List<RouterResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Result of the router with the given admin address, null if it has not been refreshed.
+     */
+    public RouterResult getResult(String address) {
+        for (RouterResult result : results) {
+            if (result.getAddress().equals(address)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Routers which have not refreshed their cache, expired ones included.
+     */
+    public int getFailureCount() {
+        return results.size() - successCount;
+    }
+
+    /**
+     * Routers which have not refreshed their cache within the cache update timeout.
+     */
+    public int getExpiredCount() {
+        return expiredCount;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "RefreshReport{successCount=" + successCount + ", failureCount=" + getFailureCount()
+                + ", expiredCount=" + expiredCount + ", durationNanos=" + durationNanos + "}";
+    }
+}
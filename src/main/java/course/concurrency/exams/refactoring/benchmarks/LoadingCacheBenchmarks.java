@@ -0,0 +1,105 @@
+package course.concurrency.exams.refactoring.benchmarks;
+
+import course.concurrency.exams.refactoring.Others;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Router clients read from {@link Others.LoadingCache} by admin addresses with Zipfian popularity,
+ * creating a client costs {@link #CLIENT_CREATION_TOKENS} of CPU. A cleaner runs every
+ * {@link #CLEANER_PERIOD_MILLIS} like in {@code MountTableRefresherService}: either removing
+ * expired clients only, or all of them as the cache did before. The hit ratio is printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LoadingCacheBenchmarks {
+
+    public static final int READERS = 4;
+    private static final int ADDRESSES = 10_000;
+    private static final double ZIPF_EXPONENT = 0.99;
+    private static final int SAMPLES = 1 << 20;
+    private static final long CLIENT_CREATION_TOKENS = 10_000;
+    private static final long CLEANER_PERIOD_MILLIS = 15;
+    private static final long MAX_IDLE_MILLIS = 1000;
+
+    @Param({"100", "1000"})
+    private long maximumSize;
+
+    @Param({"expired", "clearAll"})
+    private String cleaner;
+
+    private Others.LoadingCache<String, Others.RouterClient> cache;
+    private ScheduledExecutorService cleanerScheduler;
+    private String[] samples;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LoadingCacheBenchmarks.class.getName())
+                .threads(READERS)
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setupSamples() {
+        double[] cumulative = new double[ADDRESSES];
+        double sum = 0;
+        for (int i = 0; i < ADDRESSES; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        samples = new String[SAMPLES];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < SAMPLES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            samples[i] = "router-" + (rank < 0 ? -rank - 1 : rank) + ":8111";
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        cache = new Others.LoadingCache<>();
+        cache.setLoader(address -> {
+            Blackhole.consumeCPU(CLIENT_CREATION_TOKENS);
+            return new Others.RouterClient();
+        });
+        cache.setMaximumSize(maximumSize);
+        cache.setExpireAfterAccess(MAX_IDLE_MILLIS);
+        cleanerScheduler = Executors.newSingleThreadScheduledExecutor();
+        cleanerScheduler.scheduleWithFixedDelay(cleaner.equals("expired") ? cache::cleanUp : cache::invalidateAll,
+                CLEANER_PERIOD_MILLIS, CLEANER_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        cleanerScheduler.shutdownNow();
+        System.out.printf("%nhit ratio %.3f, evictions %d, size %d%n",
+                cache.getHitRatio(), cache.getEvictionCount(), cache.size());
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        int next = ThreadLocalRandom.current().nextInt(SAMPLES);
+    }
+
+    @Benchmark
+    public Others.RouterClient get(Reader reader) {
+        reader.next = (reader.next + 1) & (SAMPLES - 1);
+        return cache.get(samples[reader.next]);
+    }
+}
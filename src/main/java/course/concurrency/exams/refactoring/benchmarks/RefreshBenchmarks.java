@@ -0,0 +1,100 @@
+package course.concurrency.exams.refactoring.benchmarks;
+
+import course.concurrency.exams.refactoring.MountTableRefresherService;
+import course.concurrency.exams.refactoring.Others;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * One {@link MountTableRefresherService#refresh} of all routers, every router refreshes
+ * in {@link #ROUTER_REFRESH_MILLIS}. The parallelism as large as the number of routers is
+ * a thread per router, as the cached thread pool did. The peak number of threads
+ * of the process is printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RefreshBenchmarks {
+
+    private static final long ROUTER_REFRESH_MILLIS = 5;
+    private static final long CACHE_UPDATE_TIMEOUT = 1000;
+
+    @Param({"10", "1000", "10000"})
+    private int routers;
+
+    @Param({"16", "perRouter"})
+    private String parallelism;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private MountTableRefresherService service;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RefreshBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        service = new MountTableRefresherService() {
+            @Override
+            public void log(String message) {
+                // measured without console output
+            }
+        };
+        service.setCacheUpdateTimeout(CACHE_UPDATE_TIMEOUT);
+        service.setRouterClientsCache(new Others.LoadingCache<>());
+        service.setRefreshParallelism(parallelism.equals("perRouter") ? routers : Integer.parseInt(parallelism),
+                Integer.MAX_VALUE);
+        List<Others.RouterState> states = IntStream.range(0, routers)
+                .mapToObj(i -> new Others.RouterState("router-"))
+                .collect(Collectors.toList());
+        service.setRouterStore(new Others.RouterStore() {
+            @Override
+            public List<Others.RouterState> getCachedRecords() {
+                return states;
+            }
+        });
+        service.setManagerFactory(address -> new Others.MountTableManager(address) {
+            @Override
+            public boolean refresh() {
+                try {
+                    Thread.sleep(ROUTER_REFRESH_MILLIS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return true;
+            }
+        });
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeak() {
+        threads.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeak() {
+        System.out.printf("%n%d routers: peak %d threads%n", routers, threads.getPeakThreadCount());
+    }
+
+    @Benchmark
+    public void refresh() {
+        service.refresh();
+    }
+}
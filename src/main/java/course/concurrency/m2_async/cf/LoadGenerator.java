@@ -2,11 +2,40 @@ package course.concurrency.m2_async.cf;
 
 import java.util.stream.IntStream;
 
+/**
+ * CPU load of report stages: the last even number of the range, found by scanning all of it.
+ * <p>
+ * The scan is done in one of the {@link Mode}s, {@link Mode#BOXED} by default. The default can be set
+ * with the {@value #MODE_PROPERTY} system property, for example {@code -Dcourse.loadGenerator.mode=PARALLEL}.
+ */
 public class LoadGenerator {
 
+    public static final String MODE_PROPERTY = "course.loadGenerator.mode";
+
+    private static final int RANGE = 50_000_000;
+
+    public enum Mode {
+        /** Stream of boxed integers on the calling thread, allocates an object per number. */
+        BOXED,
+        /** Plain loop over ints on the calling thread, allocates nothing. */
+        PRIMITIVE,
+        /** Stream of ints split among threads of the common fork-join pool. */
+        PARALLEL
+    }
+
+    private static volatile Mode mode = Mode.valueOf(System.getProperty(MODE_PROPERTY, Mode.BOXED.name()));
+
+    public static void setMode(Mode mode) {
+        LoadGenerator.mode = mode;
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
     public static void work() {
 //        sleep();
-        compute();
+        compute(mode);
     }
 
     private static void sleep() {
@@ -17,7 +46,33 @@ public class LoadGenerator {
         }
     }
 
-    private static int compute() {
-        return IntStream.range(0, 50_000_000).boxed().filter(i -> i % 2 == 0).reduce((a, b) -> b).get();
+    public static int compute(Mode mode) {
+        switch (mode) {
+            case PRIMITIVE:
+                return computePrimitive();
+            case PARALLEL:
+                return computeParallel();
+            default:
+                return computeBoxed();
+        }
+    }
+
+    private static int computeBoxed() {
+        return IntStream.range(0, RANGE).boxed().filter(i -> i % 2 == 0).reduce((a, b) -> b).get();
+    }
+
+    private static int computePrimitive() {
+        int last = -1;
+        for (int i = 0; i < RANGE; i++) {
+            if (i % 2 == 0) {
+                last = i;
+            }
+        }
+        return last;
+    }
+
+    // the reduction keeps the encounter order, so the result is the same as of the sequential scan
+    private static int computeParallel() {
+        return IntStream.range(0, RANGE).parallel().filter(i -> i % 2 == 0).reduce((a, b) -> b).getAsInt();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.min_price.ExecutionStrategy;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * One {@link PriceAggregator#getMinPrice} call over as many shops as there are in-flight requests,
+ * every shop answers in {@link #SHOP_LATENCY_MILLIS}. Once all requests are running, the number of
+ * platform threads, used heap and resident memory of the process are printed.
+ * <p>
+ * Virtual threads are measured on Java 21+ only, older runtimes fall back to the cached thread pool
+ * and the setup prints it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ExecutionStrategyBenchmarks {
+
+    private static final long SHOP_LATENCY_MILLIS = 500L;
+
+    @Param({"1000", "10000", "100000"})
+    private int inFlight;
+
+    @Param({"cachedThreadPool", "virtualThreads"})
+    private String strategy;
+
+    private final PriceAggregator priceAggregator = new PriceAggregator();
+    private final AtomicInteger started = new AtomicInteger();
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ExecutionStrategyBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        ExecutionStrategy executionStrategy = strategy.equals("virtualThreads")
+                ? ExecutionStrategy.virtualThreads()
+                : ExecutionStrategy.cachedThreadPool();
+        System.out.println("Execution strategy: " + executionStrategy);
+        priceAggregator.setExecutionStrategy(executionStrategy);
+        priceAggregator.setShops(LongStream.range(0, inFlight).boxed().collect(Collectors.toList()));
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                if (started.incrementAndGet() == inFlight) {
+                    printFootprint();
+                }
+                try {
+                    Thread.sleep(SHOP_LATENCY_MILLIS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return shopId;
+            }
+        });
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStarted() {
+        started.set(0);
+    }
+
+    @Benchmark
+    public double getMinPrice() {
+        return priceAggregator.getMinPrice(1);
+    }
+
+    private void printFootprint() {
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("%n%d in flight: %d platform threads, heap used %d MB, rss %d MB%n", inFlight,
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20, residentMegabytes());
+    }
+
+    // linux only, -1 elsewhere
+    private static long residentMegabytes() {
+        try {
+            return Files.readAllLines(Path.of("/proc/self/status")).stream()
+                    .filter(line -> line.startsWith("VmRSS:"))
+                    .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")) >> 10)
+                    .findFirst()
+                    .orElse(-1);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.LoadGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link LoadGenerator#compute} per operation in every mode, by 1 to N caller threads,
+ * where N is the number of cores. Parallel callers share the common pool with each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoadGeneratorBenchmarks {
+
+    @Param({"BOXED", "PRIMITIVE", "PARALLEL"})
+    private LoadGenerator.Mode mode;
+
+    public static void main(String[] args) throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(LoadGeneratorBenchmarks.class.getName())
+                    .forks(1)
+                    .threads(threads)
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+
+    @Benchmark
+    public int compute() {
+        return LoadGenerator.compute(mode);
+    }
+}
@@ -0,0 +1,85 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Minimum prices of a catalogue page: {@link PriceAggregator#getMinPrice} for every item in a loop
+ * against one {@link PriceAggregator#getMinPrices} call. Shop requests (each one a future of the
+ * aggregator) per page are printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MinPricesBenchmarks {
+
+    private static final int SHOPS = 10;
+    private static final int PAGE_ITEMS = 200;
+
+    private final PriceAggregator priceAggregator = new PriceAggregator();
+    private final List<Long> pageItems = LongStream.range(0, PAGE_ITEMS).boxed().collect(Collectors.toList());
+    private final LongAdder shopRequests = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MinPricesBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        priceAggregator.setShops(LongStream.range(0, SHOPS).boxed().collect(Collectors.toList()));
+        priceAggregator.setPriceRetriever(new SimulatedPriceRetriever(5, 50, 0.05) {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                shopRequests.increment();
+                return super.getPrice(itemId, shopId);
+            }
+
+            @Override
+            public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+                shopRequests.increment();
+                return super.getPrices(itemIds, shopId);
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void printShopRequests() {
+        System.out.printf("%n%d shop requests per page%n", shopRequests.sumThenReset() / Math.max(1, pages.sumThenReset()));
+    }
+
+    @Benchmark
+    public double[] perItemLoop() {
+        pages.increment();
+        double[] minPrices = new double[PAGE_ITEMS];
+        for (int i = 0; i < PAGE_ITEMS; i++) {
+            minPrices[i] = priceAggregator.getMinPrice(pageItems.get(i));
+        }
+        return minPrices;
+    }
+
+    @Benchmark
+    public Map<Long, Double> batch() {
+        pages.increment();
+        return priceAggregator.getMinPrices(pageItems);
+    }
+}
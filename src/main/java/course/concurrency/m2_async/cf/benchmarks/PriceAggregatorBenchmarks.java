@@ -0,0 +1,68 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.min_price.CompletionPolicy;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Latency distribution of {@link PriceAggregator#getMinPrice} with every {@link CompletionPolicy}
+ * over shops with a heavy latency tail: 5-20 ms usually, 100-500 ms for one request in ten.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PriceAggregatorBenchmarks {
+
+    private static final int SHOPS = 20;
+
+    @Param({"all", "first5", "half", "soft30ms"})
+    private String policy;
+
+    private final PriceAggregator priceAggregator = new PriceAggregator();
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PriceAggregatorBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        priceAggregator.setPriceRetriever(new SimulatedPriceRetriever(5, 100, 0.1));
+        priceAggregator.setShops(LongStream.range(0, SHOPS).boxed().collect(Collectors.toList()));
+        priceAggregator.setCompletionPolicy(policyOf(policy));
+    }
+
+    private static CompletionPolicy policyOf(String name) {
+        switch (name) {
+            case "all":
+                return CompletionPolicy.all();
+            case "first5":
+                return CompletionPolicy.firstResponses(5);
+            case "half":
+                return CompletionPolicy.fractionOfShops(0.5);
+            case "soft30ms":
+                return CompletionPolicy.softDeadline(30);
+            default:
+                throw new IllegalArgumentException("Unknown completion policy: " + name);
+        }
+    }
+
+    @Benchmark
+    public double getMinPrice() {
+        return priceAggregator.getMinPrice(42);
+    }
+}
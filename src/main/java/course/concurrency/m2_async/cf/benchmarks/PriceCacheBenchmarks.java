@@ -0,0 +1,76 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.min_price.CachingPriceRetriever;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Concurrent {@link PriceAggregator#getMinPrice} calls for a few popular items with and without
+ * {@link CachingPriceRetriever}. Hit ratio and saved calls are printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PriceCacheBenchmarks {
+
+    public static final int CALLERS = 16;
+    private static final int SHOPS = 10;
+    private static final int POPULAR_ITEMS = 20;
+    private static final long TTL_MILLIS = 200L;
+
+    @Param({"none", "cache"})
+    private String cache;
+
+    private final PriceAggregator priceAggregator = new PriceAggregator();
+    private ExecutorService loader;
+    private CachingPriceRetriever cachingRetriever;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PriceCacheBenchmarks.class.getName())
+                .threads(CALLERS)
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        PriceRetriever retriever = new SimulatedPriceRetriever(5, 50, 0.05);
+        loader = Executors.newCachedThreadPool();
+        cachingRetriever = new CachingPriceRetriever(retriever, loader, TTL_MILLIS, POPULAR_ITEMS * SHOPS);
+        priceAggregator.setPriceRetriever(cache.equals("cache") ? cachingRetriever : retriever);
+        priceAggregator.setShops(LongStream.range(0, SHOPS).boxed().collect(Collectors.toList()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (cache.equals("cache")) {
+            System.out.printf("%nhit ratio %.3f: %d hits, %d coalesced, %d loads, %d evicted%n",
+                    cachingRetriever.getHitRatio(), cachingRetriever.getHitCount(),
+                    cachingRetriever.getCoalescedCount(), cachingRetriever.getLoadCount(),
+                    cachingRetriever.getEvictionCount());
+        }
+        loader.shutdownNow();
+    }
+
+    @Benchmark
+    public double getMinPrice() {
+        return priceAggregator.getMinPrice(ThreadLocalRandom.current().nextInt(POPULAR_ITEMS));
+    }
+}
@@ -0,0 +1,84 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.min_price.HedgingPriceRetriever;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Tail latency of {@link PriceAggregator#getMinPrice} with and without {@link HedgingPriceRetriever}
+ * at p95, for different budgets of extra requests. Shops answer in 5-20 ms, one request in twenty
+ * takes 100-500 ms. The extra request rate is printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PriceHedgingBenchmarks {
+
+    public static final int CALLERS = 4;
+    private static final int SHOPS = 10;
+    private static final double HEDGE_PERCENTILE = 95;
+
+    @Param({"none", "0.05", "0.2"})
+    private String budget;
+
+    private final PriceAggregator priceAggregator = new PriceAggregator();
+    private ExecutorService executor;
+    private HedgingPriceRetriever hedging;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PriceHedgingBenchmarks.class.getName())
+                .threads(CALLERS)
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        PriceRetriever retriever = new SimulatedPriceRetriever(5, 100, 0.05);
+        priceAggregator.setShops(LongStream.range(0, SHOPS).boxed().collect(Collectors.toList()));
+        if (budget.equals("none")) {
+            priceAggregator.setPriceRetriever(retriever);
+            return;
+        }
+        executor = Executors.newCachedThreadPool();
+        hedging = new HedgingPriceRetriever(retriever, executor, HEDGE_PERCENTILE, Double.parseDouble(budget));
+        priceAggregator.setPriceRetriever(hedging);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printHedgeRate() {
+        if (hedging != null) {
+            System.out.printf("%nextra requests %.3f: %d primary, %d hedged, %d hedges won, %d over budget%n",
+                    hedging.getHedgeRate(), hedging.getPrimaryCount(), hedging.getHedgeCount(),
+                    hedging.getHedgeWinCount(), hedging.getOverBudgetCount());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public double getMinPrice() {
+        return priceAggregator.getMinPrice(1);
+    }
+}
@@ -0,0 +1,62 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.min_price.ExecutionStrategy;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceAggregatorMetrics;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * {@link PriceAggregator#getMinPrice} over {@link #SHOPS} shops answering at once, with and without
+ * {@link PriceAggregatorMetrics}. The difference divided by the number of shops is the cost
+ * of recording one shop call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PriceMetricsBenchmarks {
+
+    private static final int SHOPS = 1000;
+
+    @Param({"false", "true"})
+    private boolean recorded;
+
+    private final PriceAggregator priceAggregator = new PriceAggregator();
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PriceMetricsBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        priceAggregator.setMetrics(recorded ? new PriceAggregatorMetrics() : null);
+        priceAggregator.setExecutionStrategy(ExecutionStrategy.fixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        priceAggregator.setShops(LongStream.range(0, SHOPS).boxed().collect(Collectors.toList()));
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                return shopId;
+            }
+        });
+    }
+
+    @Benchmark
+    public double getMinPrice() {
+        return priceAggregator.getMinPrice(1);
+    }
+}
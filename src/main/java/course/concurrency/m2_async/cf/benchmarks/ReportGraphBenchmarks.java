@@ -0,0 +1,113 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.report.ReportGraph;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report of 15 stages: 6 sources which wait for {@link #sourceMillis}, then 5, 3 and 1 stages
+ * combining results of their neighbours, some of them shared. The same report is built
+ * by a {@link ReportGraph} and by a hand-written chain of {@link CompletableFuture}s.
+ * With zero latency of sources the difference is the overhead of the graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReportGraphBenchmarks {
+
+    private static final int SOURCES = 6;
+    private static final int COMBINE_TOKENS = 1000;
+
+    @Param({"0", "1"})
+    private long sourceMillis;
+
+    private ExecutorService executor;
+    private final ReportGraph graph = new ReportGraph();
+    private ReportGraph.Stage<Long> report;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ReportGraphBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(8);
+        List<ReportGraph.Stage<Long>> sources = new ArrayList<>(SOURCES);
+        for (int i = 0; i < SOURCES; i++) {
+            long source = i;
+            sources.add(graph.stage("source" + i, () -> source(source)));
+        }
+        List<ReportGraph.Stage<Long>> middle = new ArrayList<>(5);
+        for (int i = 0; i < 5; i++) {
+            middle.add(graph.stage("middle" + i, sources.get(i), sources.get(i + 1), ReportGraphBenchmarks::combine));
+        }
+        ReportGraph.Stage<Long> top0 = graph.stage("top0", middle.get(0), middle.get(1), ReportGraphBenchmarks::combine);
+        ReportGraph.Stage<Long> top1 = graph.stage("top1", middle.get(2), middle.get(3), ReportGraphBenchmarks::combine);
+        ReportGraph.Stage<Long> top2 = graph.stage("top2", middle.get(3), middle.get(4), ReportGraphBenchmarks::combine);
+        report = graph.stage("report", List.of(top0, top1, top2),
+                results -> combine(combine(results.get(top0), results.get(top1)), results.get(top2)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public long graph() {
+        return graph.run(report, executor).join();
+    }
+
+    @Benchmark
+    public long completableFutures() {
+        List<CompletableFuture<Long>> sources = new ArrayList<>(SOURCES);
+        for (int i = 0; i < SOURCES; i++) {
+            long source = i;
+            sources.add(CompletableFuture.supplyAsync(() -> source(source), executor));
+        }
+        List<CompletableFuture<Long>> middle = new ArrayList<>(5);
+        for (int i = 0; i < 5; i++) {
+            middle.add(sources.get(i).thenCombineAsync(sources.get(i + 1), ReportGraphBenchmarks::combine, executor));
+        }
+        CompletableFuture<Long> top0 = middle.get(0).thenCombineAsync(middle.get(1), ReportGraphBenchmarks::combine, executor);
+        CompletableFuture<Long> top1 = middle.get(2).thenCombineAsync(middle.get(3), ReportGraphBenchmarks::combine, executor);
+        CompletableFuture<Long> top2 = middle.get(3).thenCombineAsync(middle.get(4), ReportGraphBenchmarks::combine, executor);
+        return CompletableFuture.allOf(top0, top1, top2)
+                .thenApplyAsync(v -> combine(combine(top0.join(), top1.join()), top2.join()), executor)
+                .join();
+    }
+
+    private long source(long source) {
+        if (sourceMillis > 0) {
+            try {
+                Thread.sleep(sourceMillis);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return source;
+    }
+
+    private static long combine(long a, long b) {
+        Blackhole.consumeCPU(COMBINE_TOKENS);
+        return a + b;
+    }
+}
@@ -0,0 +1,81 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import course.concurrency.m2_async.cf.min_price.ShopLimiter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * {@link PriceAggregator#getMinPrice} over {@link #SHOPS} shops, one of which hangs longer than
+ * the aggregator waits, the others answer in {@link #SHOP_LATENCY_MILLIS}.
+ * Without a limiter every call waits for the timeout, with it the hanging shop is skipped
+ * once its breaker opens. Platform threads are printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class ShopLimiterBenchmarks {
+
+    private static final int SHOPS = 10;
+    private static final long DEGRADED_SHOP = 0;
+    private static final long SHOP_LATENCY_MILLIS = 10;
+    private static final long DEGRADED_LATENCY_MILLIS = 10_000;
+
+    @Param({"false", "true"})
+    private boolean limited;
+
+    private final PriceAggregator priceAggregator = new PriceAggregator();
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ShopLimiterBenchmarks.class.getName())
+                .forks(1)
+                .threads(4)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        if (limited) {
+            priceAggregator.setShopLimiter(new ShopLimiter());
+        }
+        priceAggregator.setShops(LongStream.range(0, SHOPS).boxed().collect(Collectors.toList()));
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                try {
+                    Thread.sleep(shopId == DEGRADED_SHOP ? DEGRADED_LATENCY_MILLIS : SHOP_LATENCY_MILLIS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return shopId;
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void printThreads() {
+        System.out.printf("%nplatform threads: %d%n", ManagementFactory.getThreadMXBean().getThreadCount());
+        if (limited) {
+            System.out.println(priceAggregator.getShopLimiter().getShopStats(DEGRADED_SHOP));
+        }
+    }
+
+    @Benchmark
+    public double getMinPrice() {
+        return priceAggregator.getMinPrice(1);
+    }
+}
@@ -0,0 +1,54 @@
+package course.concurrency.m2_async.cf.benchmarks;
+
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Price retriever with millisecond latencies and a heavy tail: most shops answer fast,
+ * one request in {@code 1 / slowShare} takes ten times longer or more.
+ * A batch of items costs as much as a single item.
+ */
+public class SimulatedPriceRetriever extends PriceRetriever {
+
+    private final long fastMillis;
+    private final long slowMillis;
+    private final double slowShare;
+
+    public SimulatedPriceRetriever(long fastMillis, long slowMillis, double slowShare) {
+        this.fastMillis = fastMillis;
+        this.slowMillis = slowMillis;
+        this.slowShare = slowShare;
+    }
+
+    @Override
+    public double getPrice(long itemId, long shopId) {
+        awaitResponse();
+        return ThreadLocalRandom.current().nextDouble(1000);
+    }
+
+    @Override
+    public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+        awaitResponse();
+        Map<Long, Double> prices = new HashMap<>();
+        for (Long itemId : itemIds) {
+            prices.put(itemId, ThreadLocalRandom.current().nextDouble(1000));
+        }
+        return prices;
+    }
+
+    private void awaitResponse() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = random.nextDouble() < slowShare
+                ? slowMillis + random.nextLong(slowMillis * 4)
+                : fastMillis + random.nextLong(fastMillis * 3);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Price request is cancelled", e);
+        }
+    }
+}
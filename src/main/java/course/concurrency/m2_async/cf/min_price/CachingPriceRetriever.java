@@ -0,0 +1,279 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Price retriever which caches prices of the delegate by item and shop.
+ * <p>
+ * A price lives for {@code ttlMillis} after it is received, the cache holds at most {@code maxSize} prices
+ * and evicts the oldest ones first. Concurrent requests of the same price share one in-flight call:
+ * the first request starts loading on the loader executor, the others wait for the same future.
+ * So a caller cancelled by {@link PriceAggregator} does not cancel the load for the rest.
+ * Failed loads are not cached.
+ * <p>
+ * {@link #getPrices} takes cached prices from the cache and asks the delegate for the missing ones
+ * with one {@link PriceRetriever#getPrices} request.
+ */
+public class CachingPriceRetriever extends PriceRetriever {
+
+    private final PriceRetriever delegate;
+    private final Executor loader;
+    private final long ttlNanos;
+    private final int maxSize;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger insertionOrderSize = new AtomicInteger();
+    // entries leave the queue under the lock only, so its size is exact
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failedLoads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingPriceRetriever(PriceRetriever delegate, Executor loader, long ttlMillis, int maxSize) {
+        if (ttlMillis <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal cache config: ttlMillis=%d, maxSize=%d", ttlMillis, maxSize));
+        }
+        this.delegate = delegate;
+        this.loader = loader;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public double getPrice(long itemId, long shopId) {
+        try {
+            return getPriceAsync(itemId, shopId).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for price", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public CompletableFuture<Double> getPriceAsync(long itemId, long shopId) {
+        return lookup(new Key(itemId, shopId), this::load).future;
+    }
+
+    @Override
+    public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+        Map<Long, CompletableFuture<Double>> prices = new HashMap<>();
+        List<Entry> missing = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            Entry entry = lookup(new Key(itemId, shopId), missing::add);
+            prices.put(itemId, entry.future.copy()); // an interrupted caller cancels its copies only
+        }
+        if (!missing.isEmpty()) {
+            loadAll(missing, shopId);
+        }
+        return collectPrices(prices);
+    }
+
+    // cached entry, or a new one installed and passed to the loading
+    private Entry lookup(Key key, Consumer<Entry> loading) {
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isExpired(System.nanoTime())) {
+                if (entry.future.isDone()) {
+                    hits.increment();
+                } else {
+                    coalesced.increment();
+                }
+                return entry;
+            }
+            Entry installing = new Entry(key);
+            boolean installed = entry == null
+                    ? entries.putIfAbsent(key, installing) == null
+                    : entries.replace(key, entry, installing);
+            if (installed) {
+                insertionOrder.offer(installing);
+                insertionOrderSize.incrementAndGet();
+                evictOverflow();
+                loading.accept(installing);
+                return installing;
+            }
+            // another thread has just installed its entry
+        }
+    }
+
+    // an installed entry is always completed or removed, even if the loader rejects it
+    private void load(Entry entry) {
+        loads.increment();
+        CompletableFuture<Double> price;
+        try {
+            price = CompletableFuture.supplyAsync(() -> delegate.getPrice(entry.key.itemId, entry.key.shopId), loader);
+        } catch (RejectedExecutionException e) {
+            fail(entry, e);
+            return;
+        }
+        price.whenComplete((loaded, e) -> {
+            if (e != null) {
+                fail(entry, e instanceof CompletionException ? e.getCause() : e);
+            } else {
+                complete(entry, loaded);
+            }
+        });
+    }
+
+    private void loadAll(List<Entry> batch, long shopId) {
+        List<Long> itemIds = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            itemIds.add(entry.key.itemId);
+        }
+        loads.add(batch.size());
+        CompletableFuture<Map<Long, Double>> loaded;
+        try {
+            loaded = CompletableFuture.supplyAsync(() -> delegate.getPrices(itemIds, shopId), loader);
+        } catch (RejectedExecutionException e) {
+            batch.forEach(entry -> fail(entry, e));
+            return;
+        }
+        loaded.whenComplete((prices, e) -> {
+            for (Entry entry : batch) {
+                Double price = e == null ? prices.get(entry.key.itemId) : null;
+                if (price != null) {
+                    complete(entry, price);
+                } else if (e != null) {
+                    fail(entry, e instanceof CompletionException ? e.getCause() : e);
+                } else {
+                    fail(entry, new IllegalStateException("No price of item " + entry.key.itemId));
+                }
+            }
+        });
+    }
+
+    private void complete(Entry entry, double price) {
+        entry.loadedAt = System.nanoTime();
+        entry.future.complete(price);
+    }
+
+    private void fail(Entry entry, Throwable e) {
+        failedLoads.increment();
+        entries.remove(entry.key, entry);
+        entry.future.completeExceptionally(e);
+    }
+
+    // entries replaced or removed before stay in the queue until they reach its head or are purged
+    private void evictOverflow() {
+        evictionLock.lock();
+        try {
+            while (entries.size() > maxSize) {
+                Entry oldest = insertionOrder.poll();
+                if (oldest == null) {
+                    break;
+                }
+                insertionOrderSize.decrementAndGet();
+                if (entries.remove(oldest.key, oldest)) {
+                    evictions.increment();
+                }
+            }
+            // a cache under its size polls nothing, so dead entries are purged once they could be half of the queue,
+            // which costs a pass over the queue per maxSize inserts at most
+            if (insertionOrderSize.get() > 2 * maxSize) {
+                insertionOrder.removeIf(entry -> {
+                    boolean dead = entries.get(entry.key) != entry;
+                    if (dead) {
+                        insertionOrderSize.decrementAndGet();
+                    }
+                    return dead;
+                });
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Entries kept in the eviction order, replaced and removed ones included. At most twice the maximum size.
+     */
+    public int getEvictionQueueSize() {
+        return insertionOrderSize.get();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Requests which joined an in-flight call instead of making their own.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getFailedLoadCount() {
+        return failedLoads.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Share of requests served without a call of their own, coalesced requests included.
+     */
+    public double getHitRatio() {
+        long saved = hits.sum() + coalesced.sum();
+        long total = saved + loads.sum();
+        return total == 0 ? 0 : (double) saved / total;
+    }
+
+    private final class Entry {
+        private final Key key;
+        private final CompletableFuture<Double> future = new CompletableFuture<>();
+        private volatile long loadedAt;
+
+        Entry(Key key) {
+            this.key = key;
+        }
+
+        // price being loaded never expires
+        boolean isExpired(long now) {
+            return future.isDone() && now - loadedAt > ttlNanos;
+        }
+    }
+
+    private static final class Key {
+        private final long itemId;
+        private final long shopId;
+
+        Key(long itemId, long shopId) {
+            this.itemId = itemId;
+            this.shopId = shopId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return itemId == key.itemId && shopId == key.shopId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(itemId) + Long.hashCode(shopId);
+        }
+    }
+}
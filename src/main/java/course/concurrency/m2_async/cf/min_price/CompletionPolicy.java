@@ -0,0 +1,85 @@
+package course.concurrency.m2_async.cf.min_price;
+
+/**
+ * When {@link PriceAggregator} stops waiting for shops and returns the minimum of prices received so far.
+ * <p>
+ * Every policy returns as soon as all shops have answered or failed, and never waits longer
+ * than the request timeout of the aggregator.
+ */
+public final class CompletionPolicy {
+
+    private static final CompletionPolicy ALL = new CompletionPolicy(Integer.MAX_VALUE, 0, -1L);
+
+    private final int responses;
+    private final double fraction;
+    private final long softDeadlineMillis;
+
+    private CompletionPolicy(int responses, double fraction, long softDeadlineMillis) {
+        this.responses = responses;
+        this.fraction = fraction;
+        this.softDeadlineMillis = softDeadlineMillis;
+    }
+
+    /**
+     * Waits for every shop.
+     */
+    public static CompletionPolicy all() {
+        return ALL;
+    }
+
+    /**
+     * Returns after the first {@code count} prices.
+     */
+    public static CompletionPolicy firstResponses(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Illegal response count: " + count);
+        }
+        return new CompletionPolicy(count, 0, -1L);
+    }
+
+    /**
+     * Returns after prices from the given fraction of shops, rounded up.
+     */
+    public static CompletionPolicy fractionOfShops(double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Illegal fraction of shops: " + fraction);
+        }
+        return new CompletionPolicy(Integer.MAX_VALUE, fraction, -1L);
+    }
+
+    /**
+     * Returns the current minimum once the deadline has passed and at least one price is received.
+     */
+    public static CompletionPolicy softDeadline(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Illegal soft deadline: " + millis);
+        }
+        return new CompletionPolicy(Integer.MAX_VALUE, 0, millis);
+    }
+
+    int requiredResponses(int shopCount) {
+        if (fraction > 0) {
+            return (int) Math.ceil(shopCount * fraction);
+        }
+        return Math.min(responses, shopCount);
+    }
+
+    boolean hasSoftDeadline() {
+        return softDeadlineMillis >= 0;
+    }
+
+    long getSoftDeadlineMillis() {
+        return softDeadlineMillis;
+    }
+
+    @Override
+    public String toString() {
+        if (hasSoftDeadline()) {
+            return "softDeadline(" + softDeadlineMillis + "ms)";
+        }
+        if (fraction > 0) {
+            return "fractionOfShops(" + fraction + ")";
+        }
+        return responses == Integer.MAX_VALUE ? "all" : "firstResponses(" + responses + ")";
+    }
+}
@@ -0,0 +1,82 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Threads which run shop requests of {@link PriceAggregator}.
+ * <p>
+ * Virtual threads are looked up at runtime, so the code still compiles for Java 11:
+ * on a Java 21+ runtime they run the requests, on older ones the cached thread pool does,
+ * see {@link #isVirtualThreadsSupported()}.
+ */
+public final class ExecutionStrategy {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadFactoryMethod();
+
+    private final String name;
+    private final Supplier<ExecutorService> executorFactory;
+
+    private ExecutionStrategy(String name, Supplier<ExecutorService> executorFactory) {
+        this.name = name;
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * Platform thread per concurrent request, idle threads are reused.
+     */
+    public static ExecutionStrategy cachedThreadPool() {
+        return new ExecutionStrategy("cachedThreadPool", Executors::newCachedThreadPool);
+    }
+
+    /**
+     * At most {@code threads} requests run at once, the rest wait in the queue.
+     */
+    public static ExecutionStrategy fixedThreadPool(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Illegal thread count: " + threads);
+        }
+        return new ExecutionStrategy("fixedThreadPool(" + threads + ")", () -> Executors.newFixedThreadPool(threads));
+    }
+
+    /**
+     * New virtual thread per request, or {@link #cachedThreadPool()} if the runtime has no virtual threads.
+     */
+    public static ExecutionStrategy virtualThreads() {
+        if (!isVirtualThreadsSupported()) {
+            return new ExecutionStrategy("cachedThreadPool(no virtual threads)", Executors::newCachedThreadPool);
+        }
+        return new ExecutionStrategy("virtualThreads", ExecutionStrategy::newVirtualThreadPerTaskExecutor);
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    ExecutorService newExecutor() {
+        return executorFactory.get();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual thread executor", e);
+        }
+    }
+
+    private static Method findVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Price retriever which sends a duplicate request to a shop that is slower than usual.
+ * <p>
+ * Latencies of every shop are tracked in a {@link LatencyHistogram}. If a shop has not answered by
+ * the given percentile of its own latency, the same request is sent once more and the first answer wins,
+ * the other request is cancelled. Until a shop has {@code minSamples} latencies it is never hedged.
+ * <p>
+ * Duplicates are limited by a token bucket: every primary request earns {@code budgetRatio} of a duplicate,
+ * a duplicate spends a whole one, and at most {@code budgetBurst} unspent duplicates are kept. So the rate
+ * of duplicates stays within {@code budgetRatio} while a long calm period does not save up for a storm of them.
+ * A batch request of {@link #getPrices} is hedged as a whole with the delegate's {@link PriceRetriever#getPrices},
+ * on latencies of the batch requests of the shop.
+ * <p>
+ * Latency of every answered request is recorded, not only of the winner. A request still running when the race
+ * is over, the cancelled loser or a request of a caller who gave up, is only known to be slower than the time
+ * it has taken: it is recorded with that time if it is above the hedging percentile, so slow answers still
+ * make it into the histogram, but an unfinished request never lowers the percentile.
+ */
+public class HedgingPriceRetriever extends PriceRetriever {
+
+    private static final int DEFAULT_MIN_SAMPLES = 20;
+    private static final int DEFAULT_BUDGET_BURST = 10;
+    private static final long TOKEN = 1000L; // budget is kept in thousandths of a duplicate
+
+    private final PriceRetriever delegate;
+    private final ExecutorService executor;
+    private final double percentile;
+    private final double budgetRatio;
+    private final int minSamples;
+
+    private final Map<Long, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<Long, LatencyHistogram> batchLatencies = new ConcurrentHashMap<>();
+
+    private final AtomicLong budget = new AtomicLong();
+    private volatile long maxBudget = DEFAULT_BUDGET_BURST * TOKEN;
+
+    private final LongAdder primaries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+
+    public HedgingPriceRetriever(PriceRetriever delegate, ExecutorService executor,
+                                 double percentile, double budgetRatio) {
+        this(delegate, executor, percentile, budgetRatio, DEFAULT_MIN_SAMPLES);
+    }
+
+    public HedgingPriceRetriever(PriceRetriever delegate, ExecutorService executor,
+                                 double percentile, double budgetRatio, int minSamples) {
+        if (!(percentile > 0 && percentile < 100) || budgetRatio < 0 || minSamples <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal hedging config: percentile=%s, budgetRatio=%s, minSamples=%d",
+                    percentile, budgetRatio, minSamples));
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.percentile = percentile;
+        this.budgetRatio = budgetRatio;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Maximum number of duplicates the budget saves up for, 10 by default.
+     */
+    public void setBudgetBurst(int budgetBurst) {
+        if (budgetBurst <= 0) {
+            throw new IllegalArgumentException("Illegal budget burst: " + budgetBurst);
+        }
+        this.maxBudget = budgetBurst * TOKEN;
+        budget.accumulateAndGet(maxBudget, Math::min);
+    }
+
+    @Override
+    public double getPrice(long itemId, long shopId) {
+        LatencyHistogram histogram = latencies.computeIfAbsent(shopId, id -> new LatencyHistogram());
+        return hedge(histogram, () -> delegate.getPrice(itemId, shopId));
+    }
+
+    @Override
+    public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+        LatencyHistogram histogram = batchLatencies.computeIfAbsent(shopId, id -> new LatencyHistogram());
+        return hedge(histogram, () -> delegate.getPrices(itemIds, shopId));
+    }
+
+    private <T> T hedge(LatencyHistogram histogram, Callable<T> request) {
+        Race<T> race = new Race<>(histogram, request);
+        race.start();
+        primaries.increment();
+        earnBudget();
+        try {
+            if (histogram.getCount() >= minSamples) {
+                long hedgeDelayMicros = histogram.getPercentile(percentile);
+                try {
+                    return race.result.get(hedgeDelayMicros, TimeUnit.MICROSECONDS);
+                } catch (TimeoutException e) {
+                    if (tryTakeBudget()) {
+                        try {
+                            race.start();
+                            hedges.increment();
+                        } catch (RejectedExecutionException rejected) {
+                            // no thread for the duplicate, the primary request is still running
+                        }
+                    }
+                }
+            }
+            T price = race.result.get();
+            if (race.winner.get() > 1) {
+                hedgeWins.increment();
+            }
+            return price;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for price", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            race.stop();
+        }
+    }
+
+    private void earnBudget() {
+        long earned = (long) (budgetRatio * TOKEN);
+        if (earned > 0) {
+            budget.accumulateAndGet(earned, (tokens, add) -> Math.min(tokens + add, maxBudget));
+        }
+    }
+
+    private boolean tryTakeBudget() {
+        long tokens;
+        do {
+            tokens = budget.get();
+            if (tokens < TOKEN) {
+                overBudget.increment();
+                return false;
+            }
+        } while (!budget.compareAndSet(tokens, tokens - TOKEN));
+        return true;
+    }
+
+    public long getPrimaryCount() {
+        return primaries.sum();
+    }
+
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * Hedged requests which answered before the primary ones.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Slow requests which were not hedged because the budget was spent.
+     */
+    public long getOverBudgetCount() {
+        return overBudget.sum();
+    }
+
+    /**
+     * Extra requests sent to shops, relative to requests of the callers.
+     */
+    public double getHedgeRate() {
+        long primaries = this.primaries.sum();
+        return primaries == 0 ? 0 : (double) hedges.sum() / primaries;
+    }
+
+    /**
+     * Latencies of the shop in microseconds, null if it has never been asked.
+     */
+    public LatencyHistogram getLatencyMicros(long shopId) {
+        return latencies.get(shopId);
+    }
+
+    /**
+     * Latencies of batch requests to the shop in microseconds, null if it has never been asked.
+     */
+    public LatencyHistogram getBatchLatencyMicros(long shopId) {
+        return batchLatencies.get(shopId);
+    }
+
+    // requests for the same price, first answer completes the result
+    private class Race<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final LatencyHistogram histogram;
+        private final Callable<T> request;
+        private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile Exception failure;
+        private final AtomicInteger winner = new AtomicInteger(); // number of the winning request
+
+        Race(LatencyHistogram histogram, Callable<T> request) {
+            this.histogram = histogram;
+            this.request = request;
+        }
+
+        // throws RejectedExecutionException if the executor rejects the request
+        void start() {
+            int number = started.incrementAndGet();
+            Attempt attempt = new Attempt();
+            try {
+                attempt.future = executor.submit(() -> {
+                    try {
+                        T price = request.call();
+                        attempt.recordLatency();
+                        if (winner.compareAndSet(0, number)) {
+                            result.complete(price);
+                        }
+                    } catch (Exception e) {
+                        attempt.recordLatency();
+                        failed(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                started.decrementAndGet();
+                if (failure != null) {
+                    failed(null); // the others may have already failed waiting for this one
+                }
+                throw e;
+            }
+            attempts.add(attempt);
+        }
+
+        // the last failure fails the result
+        private void failed(Exception e) {
+            if (e != null) {
+                failure = e;
+                if (failed.incrementAndGet() != started.get()) {
+                    return;
+                }
+            } else if (failed.get() != started.get()) {
+                return;
+            }
+            result.completeExceptionally(failure);
+        }
+
+        // a request which has not answered yet is slower than the time it has taken so far: it is recorded
+        // only if that is above the percentile, which it cannot lower then, otherwise its latency is unknown
+        void stop() {
+            long percentileMicros = -1;
+            for (Attempt attempt : attempts) {
+                if (!attempt.future.isDone()) {
+                    if (percentileMicros < 0) {
+                        percentileMicros = histogram.getPercentile(percentile);
+                    }
+                    attempt.recordCensored(percentileMicros);
+                }
+                attempt.future.cancel(true);
+            }
+        }
+
+        private class Attempt {
+            private final long start = System.nanoTime();
+            private final AtomicBoolean recorded = new AtomicBoolean();
+            private Future<?> future; // set before the attempt is added to the race
+
+            void recordLatency() {
+                if (recorded.compareAndSet(false, true)) {
+                    histogram.record(elapsedMicros());
+                }
+            }
+
+            void recordCensored(long minMicros) {
+                if (recorded.compareAndSet(false, true)) {
+                    long elapsedMicros = elapsedMicros();
+                    if (elapsedMicros >= minMicros) {
+                        histogram.record(elapsedMicros);
+                    }
+                }
+            }
+
+            private long elapsedMicros() {
+                return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -2,7 +2,10 @@ package course.concurrency.m2_async.cf.min_price;
 
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
 
 public class PriceAggregator {
 
@@ -15,25 +18,478 @@ public class PriceAggregator {
     }
 
     private Collection<Long> shopIds = Set.of(10L, 45L, 66L, 345L, 234L, 333L, 67L, 123L, 768L);
-    private final ExecutorService threadPool = Executors.newCachedThreadPool();
+    private volatile ExecutorService threadPool = ExecutionStrategy.cachedThreadPool().newExecutor();
 
     public void setShops(Collection<Long> shopIds) {
         this.shopIds = shopIds;
     }
 
+    /**
+     * Replaces the threads of shop requests, requests already running finish on the old ones.
+     * Requests submitted meanwhile to the old threads are submitted again to the new ones.
+     */
+    public void setExecutionStrategy(ExecutionStrategy executionStrategy) {
+        ExecutorService replaced = threadPool;
+        threadPool = executionStrategy.newExecutor();
+        replaced.shutdown();
+    }
+
+    private volatile ShopLimiter shopLimiter;
+
+    /**
+     * Limits concurrent requests per shop and skips failing shops, null turns limiting off.
+     */
+    public void setShopLimiter(ShopLimiter shopLimiter) {
+        this.shopLimiter = shopLimiter;
+    }
+
+    public ShopLimiter getShopLimiter() {
+        return shopLimiter;
+    }
+
+    private volatile PriceAggregatorMetrics metrics = new PriceAggregatorMetrics();
+
+    /**
+     * Replaces the metrics, null turns recording off.
+     */
+    public void setMetrics(PriceAggregatorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public PriceAggregatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    private CompletionPolicy completionPolicy = CompletionPolicy.all();
+
+    public void setCompletionPolicy(CompletionPolicy completionPolicy) {
+        this.completionPolicy = completionPolicy;
+    }
+
     public double getMinPrice(long itemId) {
-        List<CompletableFuture<Double>> futures = shopIds.stream()
-                .map(shopId -> CompletableFuture.supplyAsync(() -> priceRetriever.getPrice(itemId, shopId), threadPool)
-                        .orTimeout(SHOP_REQUEST_TIMEOUT, TimeUnit.MILLISECONDS))
-                .collect(Collectors.toList());
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                .exceptionally(ignored -> null) //it is OK when some futures fall with TimeoutException
-                .join();
-
-        return futures.stream()
-                .filter(future -> future.isDone() && !future.isCompletedExceptionally())
-                .mapToDouble(CompletableFuture::join)
-                .min()
-                .orElse(Double.NaN);
+        return getMinPrice(itemId, completionPolicy);
+    }
+
+    /**
+     * Asks all shops at once and returns the minimum of prices received when the policy is satisfied,
+     * or NaN if there are none. Requests still running by then are cancelled,
+     * as well as all requests when the caller is interrupted: they never outlive the call.
+     */
+    public double getMinPrice(long itemId, CompletionPolicy policy) {
+        Map<Long, Double> minPrices = collectMinPrices(policy,
+                shopId -> Collections.singletonMap(itemId, priceRetriever.getPrice(itemId, shopId)));
+        return minPrices.getOrDefault(itemId, Double.NaN);
+    }
+
+    public Map<Long, Double> getMinPrices(Collection<Long> itemIds) {
+        return getMinPrices(itemIds, completionPolicy);
+    }
+
+    /**
+     * Minimum prices of many items, NaN for items without prices. Every shop is asked once
+     * for all items with {@link PriceRetriever#getPrices}, the policy counts shops as in {@link #getMinPrice}.
+     */
+    public Map<Long, Double> getMinPrices(Collection<Long> itemIds, CompletionPolicy policy) {
+        Map<Long, Double> minPrices = collectMinPrices(policy, shopId -> priceRetriever.getPrices(itemIds, shopId));
+        Map<Long, Double> result = new HashMap<>();
+        for (Long itemId : itemIds) {
+            result.put(itemId, minPrices.getOrDefault(itemId, Double.NaN));
+        }
+        return result;
+    }
+
+    private Map<Long, Double> collectMinPrices(CompletionPolicy policy, LongFunction<Map<Long, Double>> shopRequest) {
+        long start = System.nanoTime();
+        PriceAggregatorMetrics recorder = metrics;
+        Collection<Long> shops = shopIds;
+        MinPriceCollector collector = new MinPriceCollector(shops.size(), policy.requiredResponses(shops.size()));
+
+        // deadlines count from the call, a large fan-out takes a while to submit
+        if (policy.hasSoftDeadline()) {
+            CompletableFuture.delayedExecutor(policy.getSoftDeadlineMillis(), TimeUnit.MILLISECONDS)
+                    .execute(collector::onSoftDeadline);
+        }
+        CompletableFuture.delayedExecutor(SHOP_REQUEST_TIMEOUT, TimeUnit.MILLISECONDS)
+                .execute(collector::onTimeout);
+
+        List<Future<?>> requests = submitRequests(shops, collector, shopRequest);
+        collector.result.whenComplete((minPrices, e) -> requests.forEach(request -> request.cancel(true)));
+
+        try {
+            Map<Long, Double> minPrices = collector.result.get();
+            if (recorder != null) {
+                recorder.recordFanOut(System.nanoTime() - start, minPrices.isEmpty());
+            }
+            return minPrices;
+        } catch (InterruptedException e) {
+            collector.result.cancel(false);
+            Thread.currentThread().interrupt();
+            return Collections.emptyMap();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e); // result is never completed exceptionally
+        }
+    }
+
+    /**
+     * Publishes the running minimum price of the item, an update for every shop that lowers it.
+     * <p>
+     * Every subscription asks all shops anew and completes once every shop has answered or failed,
+     * or after the same timeout as {@link #getMinPrice}, at once if there are no shops. Updates are conflated: if the subscriber
+     * has not requested more, a newer minimum replaces the undelivered one, so a slow subscriber
+     * never holds more than one update. Cancelling the subscription cancels the requests still running.
+     */
+    public Flow.Publisher<PriceUpdate> getMinPriceUpdates(long itemId) {
+        return subscriber -> {
+            Collection<Long> shops = shopIds;
+            PriceUpdateSubscription subscription = new PriceUpdateSubscription(itemId, shops.size(), subscriber);
+            subscriber.onSubscribe(subscription);
+            if (shops.isEmpty()) {
+                subscription.drain(); // nothing to emit, completes without waiting for demand
+                return;
+            }
+            CompletableFuture.delayedExecutor(SHOP_REQUEST_TIMEOUT, TimeUnit.MILLISECONDS)
+                    .execute(subscription::onTimeout);
+
+            List<Future<?>> requests = submitRequests(shops, subscription,
+                    shopId -> Collections.singletonMap(itemId, priceRetriever.getPrice(itemId, shopId)));
+            subscription.closed.whenComplete((v, e) -> requests.forEach(request -> request.cancel(true)));
+        };
+    }
+
+    private List<Future<?>> submitRequests(Collection<Long> shops, ShopListener listener,
+                                           LongFunction<Map<Long, Double>> shopRequest) {
+        ExecutorService executor = threadPool;
+        ShopLimiter limiter = shopLimiter;
+        PriceAggregatorMetrics recorder = metrics;
+        List<Future<?>> requests = new ArrayList<>(shops.size());
+        for (Long shopId : shops) {
+            if (listener.isDone()) {
+                break; // timed out while submitting
+            }
+            if (limiter != null && !limiter.tryAcquire(shopId)) {
+                if (recorder != null) {
+                    recorder.recordRejected(shopId);
+                }
+                listener.onFailure(); // skipped without taking a thread
+                continue;
+            }
+            ShopRequest request = new ShopRequest(new ShopCall(shopId, listener, shopRequest), limiter, recorder);
+            requests.add(request);
+            if (!execute(request, executor)) {
+                request.cancel(false); // releases the shop limiter
+                listener.onFailure();
+            }
+        }
+        return requests;
+    }
+
+    // the pool replaced by setExecutionStrategy rejects requests, they go to the current one
+    private boolean execute(ShopRequest request, ExecutorService executor) {
+        while (true) {
+            try {
+                executor.execute(request);
+                return true;
+            } catch (RejectedExecutionException e) {
+                ExecutorService current = threadPool;
+                if (current == executor) {
+                    return false;
+                }
+                executor = current;
+            }
+        }
+    }
+
+    // receives answers of the shops, from many threads at once
+    private interface ShopListener {
+
+        void onPrices(long shopId, Map<Long, Double> prices);
+
+        void onFailure();
+
+        boolean isDone();
+
+        boolean isTimedOut();
+    }
+
+    // done() is called on completion and on cancellation, even of a request which has not started yet;
+    // a request without an outcome by then was cancelled before the shop answered
+    private static class ShopRequest extends FutureTask<Void> {
+
+        private final ShopCall call;
+        private final ShopLimiter limiter;
+        private final PriceAggregatorMetrics metrics;
+
+        ShopRequest(ShopCall call, ShopLimiter limiter, PriceAggregatorMetrics metrics) {
+            super(call);
+            this.call = call;
+            call.task = this;
+            this.limiter = limiter;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected void done() {
+            if (limiter == null && metrics == null) {
+                return;
+            }
+            ShopLimiter.Outcome outcome = call.finish(call.listener.isTimedOut()
+                    ? ShopLimiter.Outcome.TIMEOUT
+                    : ShopLimiter.Outcome.DROPPED);
+            long latencyNanos = System.nanoTime() - call.startNanos;
+            if (limiter != null) {
+                limiter.release(call.shopId, outcome, latencyNanos);
+            }
+            if (metrics != null) {
+                metrics.recordShopCall(call.shopId, outcome, latencyNanos);
+            }
+        }
+    }
+
+    private static class ShopCall implements Callable<Void> {
+
+        private final long shopId;
+        private final ShopListener listener;
+        private final LongFunction<Map<Long, Double>> shopRequest;
+        private volatile long startNanos = System.nanoTime();
+        private final AtomicReference<ShopLimiter.Outcome> outcome = new AtomicReference<>();
+        private Future<?> task; // set before the call is submitted
+
+        ShopCall(long shopId, ShopListener listener, LongFunction<Map<Long, Double>> shopRequest) {
+            this.shopId = shopId;
+            this.listener = listener;
+            this.shopRequest = shopRequest;
+        }
+
+        @Override
+        public Void call() {
+            startNanos = System.nanoTime();
+            Map<Long, Double> prices;
+            try {
+                prices = shopRequest.apply(shopId);
+            } catch (RuntimeException e) {
+                if (!task.isCancelled()) { // otherwise the shop failed because it was interrupted
+                    finish(ShopLimiter.Outcome.FAILURE);
+                }
+                listener.onFailure(); //it is OK when some shops fail
+                return null;
+            }
+            // set before the listener completes the result and cancels this request
+            finish(ShopLimiter.Outcome.SUCCESS);
+            listener.onPrices(shopId, prices);
+            return null;
+        }
+
+        // the first outcome wins, either of the call or of the cancellation
+        ShopLimiter.Outcome finish(ShopLimiter.Outcome outcome) {
+            return this.outcome.compareAndSet(null, outcome) ? outcome : this.outcome.get();
+        }
+    }
+
+    // min prices are merged as soon as a shop answers
+    private static class MinPriceCollector implements ShopListener {
+
+        private final CompletableFuture<Map<Long, Double>> result = new CompletableFuture<>();
+        private final int shopCount;
+        private final int requiredResponses;
+
+        // guarded by this
+        private int finished;
+        private int responded;
+        private final Map<Long, Double> minPrices = new HashMap<>();
+        private boolean softDeadlinePassed;
+        private volatile boolean timedOut;
+
+        MinPriceCollector(int shopCount, int requiredResponses) {
+            this.shopCount = shopCount;
+            this.requiredResponses = requiredResponses;
+            if (shopCount == 0) {
+                result.complete(Collections.emptyMap());
+            }
+        }
+
+        @Override
+        public synchronized void onPrices(long shopId, Map<Long, Double> prices) {
+            if (result.isDone()) {
+                return; // too late
+            }
+            finished++;
+            responded++;
+            prices.forEach((itemId, price) -> {
+                if (price != null) {
+                    minPrices.merge(itemId, price, Math::min);
+                }
+            });
+            if (responded >= requiredResponses || finished == shopCount || softDeadlinePassed) {
+                complete();
+            }
+        }
+
+        @Override
+        public synchronized void onFailure() {
+            finished++;
+            if (finished == shopCount) {
+                complete();
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        synchronized void onSoftDeadline() {
+            softDeadlinePassed = true;
+            if (responded > 0) {
+                complete();
+            }
+        }
+
+        synchronized void onTimeout() {
+            if (!result.isDone()) {
+                timedOut = true;
+                complete();
+            }
+        }
+
+        @Override
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        private void complete() {
+            if (!result.isDone()) {
+                result.complete(new HashMap<>(minPrices));
+            }
+        }
+    }
+
+    // signals to the subscriber are serialized by the drain loop, whichever thread calls it
+    private static class PriceUpdateSubscription implements Flow.Subscription, ShopListener {
+
+        private final long itemId;
+        private final int shopCount;
+        private final Flow.Subscriber<? super PriceUpdate> subscriber;
+        private final CompletableFuture<Void> closed = new CompletableFuture<>(); // no more updates
+
+        // guarded by this
+        private int finished;
+        private int responded;
+        private double minPrice = Double.NaN;
+        private volatile boolean timedOut;
+
+        private final AtomicReference<PriceUpdate> pending = new AtomicReference<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private boolean terminated; // accessed in the drain loop only
+
+        PriceUpdateSubscription(long itemId, int shopCount, Flow.Subscriber<? super PriceUpdate> subscriber) {
+            this.itemId = itemId;
+            this.shopCount = shopCount;
+            this.subscriber = subscriber;
+            if (shopCount == 0) {
+                closed.complete(null);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " updates, should be positive");
+                closed.complete(null);
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            pending.set(null);
+            closed.complete(null);
+        }
+
+        @Override
+        public void onPrices(long shopId, Map<Long, Double> prices) {
+            synchronized (this) {
+                if (closed.isDone()) {
+                    return; // too late
+                }
+                finished++;
+                responded++;
+                Double price = prices.get(itemId);
+                if (price != null && !(price >= minPrice)) { // minPrice is NaN before the first price
+                    minPrice = price;
+                    pending.set(new PriceUpdate(itemId, shopId, price, responded, shopCount));
+                }
+                if (finished == shopCount) {
+                    closed.complete(null);
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void onFailure() {
+            synchronized (this) {
+                finished++;
+                if (finished == shopCount) {
+                    closed.complete(null);
+                }
+            }
+            drain();
+        }
+
+        void onTimeout() {
+            synchronized (this) {
+                if (!closed.isDone()) {
+                    timedOut = true;
+                    closed.complete(null);
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public boolean isDone() {
+            return closed.isDone();
+        }
+
+        @Override
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return; // the thread in the loop will see the change
+            }
+            do {
+                if (terminated || cancelled) {
+                    continue;
+                }
+                Throwable failure = error;
+                if (failure != null) {
+                    terminated = true;
+                    subscriber.onError(failure);
+                    continue;
+                }
+                // closed is read before pending: the last update is set before closed completes
+                boolean done = closed.isDone();
+                if (demand.get() > 0) {
+                    PriceUpdate update = pending.getAndSet(null);
+                    if (update != null) {
+                        demand.decrementAndGet();
+                        subscriber.onNext(update);
+                    }
+                }
+                if (done && pending.get() == null && !cancelled) {
+                    terminated = true;
+                    subscriber.onComplete();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
     }
 }
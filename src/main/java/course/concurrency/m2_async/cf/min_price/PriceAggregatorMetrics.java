@@ -0,0 +1,243 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcomes and latencies of {@link PriceAggregator} calls.
+ * <p>
+ * Every shop request ends up in one counter of its shop: success, failure, timeout (cancelled by the
+ * aggregator timeout), dropped (cancelled because the answer was no longer needed) or rejected by
+ * the {@link ShopLimiter}. Latencies of answered requests are kept per shop, time of whole fan-outs
+ * in one more histogram. Recording is a map lookup, an increment of a {@link LongAdder}
+ * and of a {@link LatencyHistogram} bucket, without locks or allocation.
+ */
+public class PriceAggregatorMetrics implements PriceAggregatorMetricsMBean {
+
+    private final Map<Long, ShopRecorder> shops = new ConcurrentHashMap<>();
+    private final LatencyHistogram fanOutMicros = new LatencyHistogram();
+    private final LongAdder fanOuts = new LongAdder();
+    private final LongAdder emptyResults = new LongAdder();
+
+    void recordShopCall(long shopId, ShopLimiter.Outcome outcome, long latencyNanos) {
+        ShopRecorder shop = shop(shopId);
+        switch (outcome) {
+            case SUCCESS:
+                shop.successes.increment();
+                shop.latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+                break;
+            case FAILURE:
+                shop.failures.increment();
+                shop.latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+                break;
+            case TIMEOUT:
+                shop.timeouts.increment();
+                break;
+            case DROPPED:
+                shop.dropped.increment();
+                break;
+        }
+    }
+
+    void recordRejected(long shopId) {
+        shop(shopId).rejected.increment();
+    }
+
+    void recordFanOut(long durationNanos, boolean empty) {
+        fanOuts.increment();
+        fanOutMicros.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        if (empty) {
+            emptyResults.increment();
+        }
+    }
+
+    private ShopRecorder shop(long shopId) {
+        ShopRecorder shop = shops.get(shopId); // only the first call of a shop creates its recorder
+        return shop != null ? shop : shops.computeIfAbsent(shopId, id -> new ShopRecorder());
+    }
+
+    /**
+     * Current metrics of every shop ever asked, by shop id.
+     */
+    public Map<Long, ShopMetrics> getShopMetricsById() {
+        Map<Long, ShopMetrics> metrics = new TreeMap<>();
+        shops.forEach((shopId, shop) -> metrics.put(shopId, shop.snapshot(shopId)));
+        return metrics;
+    }
+
+    public ShopMetrics getShopMetrics(long shopId) {
+        ShopRecorder shop = shops.get(shopId);
+        return shop == null ? null : shop.snapshot(shopId);
+    }
+
+    /**
+     * Time from the call to the result of {@link PriceAggregator#getMinPrice} and
+     * {@link PriceAggregator#getMinPrices}, in microseconds.
+     */
+    public LatencyHistogram getFanOutMicros() {
+        return fanOutMicros;
+    }
+
+    @Override
+    public long getFanOutCount() {
+        return fanOuts.sum();
+    }
+
+    /**
+     * Fan-outs without a single price, those are NaN answers of {@link PriceAggregator#getMinPrice}.
+     */
+    @Override
+    public long getEmptyResultCount() {
+        return emptyResults.sum();
+    }
+
+    @Override
+    public long getFanOutP50Micros() {
+        return fanOutMicros.getPercentile(50);
+    }
+
+    @Override
+    public long getFanOutP99Micros() {
+        return fanOutMicros.getPercentile(99);
+    }
+
+    @Override
+    public long getSuccessCount() {
+        return shops.values().stream().mapToLong(shop -> shop.successes.sum()).sum();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return shops.values().stream().mapToLong(shop -> shop.failures.sum()).sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return shops.values().stream().mapToLong(shop -> shop.timeouts.sum()).sum();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return shops.values().stream().mapToLong(shop -> shop.dropped.sum()).sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return shops.values().stream().mapToLong(shop -> shop.rejected.sum()).sum();
+    }
+
+    @Override
+    public String[] getShopMetrics() {
+        return getShopMetricsById().values().stream().map(ShopMetrics::toString).toArray(String[]::new);
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server under
+     * {@code course.concurrency:type=PriceAggregator,name=<name>}.
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics " + name, e);
+        }
+    }
+
+    public void unregisterMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister metrics " + name, e);
+        }
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName("course.concurrency:type=PriceAggregator,name=" + ObjectName.quote(name));
+    }
+
+    private static class ShopRecorder {
+        private final LatencyHistogram latencyMicros = new LatencyHistogram();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        ShopMetrics snapshot(long shopId) {
+            return new ShopMetrics(shopId, successes.sum(), failures.sum(), timeouts.sum(), dropped.sum(),
+                    rejected.sum(), latencyMicros.getPercentile(50), latencyMicros.getPercentile(99));
+        }
+    }
+
+    public static final class ShopMetrics {
+        private final long shopId;
+        private final long successCount;
+        private final long failureCount;
+        private final long timeoutCount;
+        private final long droppedCount;
+        private final long rejectedCount;
+        private final long p50Micros;
+        private final long p99Micros;
+
+        ShopMetrics(long shopId, long successCount, long failureCount, long timeoutCount, long droppedCount,
+                    long rejectedCount, long p50Micros, long p99Micros) {
+            this.shopId = shopId;
+            this.successCount = successCount;
+            this.failureCount = failureCount;
+            this.timeoutCount = timeoutCount;
+            this.droppedCount = droppedCount;
+            this.rejectedCount = rejectedCount;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+        }
+
+        public long getShopId() {
+            return shopId;
+        }
+
+        public long getSuccessCount() {
+            return successCount;
+        }
+
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        public long getDroppedCount() {
+            return droppedCount;
+        }
+
+        public long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * Median latency of answered requests, successful or failed.
+         */
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("shop %d: success=%d, failure=%d, timeout=%d, dropped=%d, rejected=%d, p50=%dus, p99=%dus",
+                    shopId, successCount, failureCount, timeoutCount, droppedCount, rejectedCount, p50Micros, p99Micros);
+        }
+    }
+}
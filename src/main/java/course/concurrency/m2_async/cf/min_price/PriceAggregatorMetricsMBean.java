@@ -0,0 +1,30 @@
+package course.concurrency.m2_async.cf.min_price;
+
+/**
+ * JMX view of {@link PriceAggregatorMetrics}, latencies are in microseconds.
+ */
+public interface PriceAggregatorMetricsMBean {
+
+    long getFanOutCount();
+
+    long getEmptyResultCount();
+
+    long getFanOutP50Micros();
+
+    long getFanOutP99Micros();
+
+    long getSuccessCount();
+
+    long getFailureCount();
+
+    long getTimeoutCount();
+
+    long getDroppedCount();
+
+    long getRejectedCount();
+
+    /**
+     * One line per shop, as {@link PriceAggregatorMetrics.ShopMetrics#toString()}.
+     */
+    String[] getShopMetrics();
+}
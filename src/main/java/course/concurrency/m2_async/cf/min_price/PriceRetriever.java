@@ -1,15 +1,138 @@
 package course.concurrency.m2_async.cf.min_price;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
 
 public class PriceRetriever {
 
+    private static final int ITEM_REQUEST_THREADS = 64;
+    private static final int DEFAULT_ITEM_PARALLELISM = 8;
+    private static final long DEFAULT_BATCH_TIMEOUT_MILLIS = 2900L; // a bit less than the timeout of PriceAggregator
+
+    // shared by all retrievers, idle threads time out
+    private static final ThreadPoolExecutor ITEM_REQUESTS = newItemRequestExecutor();
+
+    private volatile int itemParallelism = DEFAULT_ITEM_PARALLELISM;
+    private volatile long batchTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BATCH_TIMEOUT_MILLIS);
+
     public double getPrice(long itemId, long shopId) {
         int delay = ThreadLocalRandom.current().nextInt(8);
         sleep(delay);
         return ThreadLocalRandom.current().nextDouble(1000);
     }
 
+    /**
+     * Prices of many items from the shop by item id. Override to ask for all items in one request.
+     * <p>
+     * The default is a fallback for shops without a batch request: every item is asked with {@link #getPrice},
+     * at most {@code itemParallelism} of them at once, on threads shared by all retrievers. When the batch timeout
+     * is over, prices received so far are returned and the other requests are cancelled, so a slow item
+     * does not hold back the whole shop. Items whose request failed are missing from the result,
+     * it fails only if all of them failed.
+     */
+    public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+        long deadline = System.nanoTime() + batchTimeoutNanos;
+        int parallelism = itemParallelism;
+        CompletionService<Double> requests = new ExecutorCompletionService<>(ITEM_REQUESTS);
+        Map<Future<Double>, Long> running = new HashMap<>();
+        Map<Long, Double> prices = new HashMap<>();
+        Throwable failure = null;
+        Iterator<Long> items = itemIds.iterator();
+        try {
+            while (true) {
+                while (running.size() < parallelism && items.hasNext()) {
+                    Long itemId = items.next();
+                    running.put(requests.submit(() -> getPrice(itemId, shopId)), itemId);
+                }
+                if (running.isEmpty()) {
+                    break;
+                }
+                Future<Double> answered = requests.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (answered == null) {
+                    break; // timed out, the rest is cancelled
+                }
+                Long itemId = running.remove(answered);
+                try {
+                    prices.put(itemId, answered.get());
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for prices", e);
+        } finally {
+            running.keySet().forEach(request -> request.cancel(true));
+        }
+        return pricesOrFailure(prices, failure);
+    }
+
+    /**
+     * Items of one {@link #getPrices} call asked at once by the default batch request, 8 by default.
+     */
+    public void setItemParallelism(int itemParallelism) {
+        if (itemParallelism <= 0) {
+            throw new IllegalArgumentException("Illegal item parallelism: " + itemParallelism);
+        }
+        this.itemParallelism = itemParallelism;
+    }
+
+    /**
+     * Time after which the default batch request returns the prices received so far.
+     */
+    public void setBatchTimeout(long batchTimeoutMillis) {
+        this.batchTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(batchTimeoutMillis);
+    }
+
+    /**
+     * Waits for prices of all items as {@link #getPrices} returns them. The requests are cancelled
+     * if the caller is interrupted.
+     */
+    protected static Map<Long, Double> collectPrices(Map<Long, ? extends Future<Double>> requests) {
+        Map<Long, Double> prices = new HashMap<>();
+        Throwable failure = null;
+        try {
+            for (Map.Entry<Long, ? extends Future<Double>> request : requests.entrySet()) {
+                try {
+                    prices.put(request.getKey(), request.getValue().get());
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                }
+            }
+        } catch (InterruptedException e) {
+            requests.values().forEach(request -> request.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for prices", e);
+        }
+        return pricesOrFailure(prices, failure);
+    }
+
+    // fails only if there are no prices at all
+    private static Map<Long, Double> pricesOrFailure(Map<Long, Double> prices, Throwable failure) {
+        if (prices.isEmpty() && failure != null) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new IllegalStateException(failure);
+        }
+        return prices;
+    }
+
+    private static ThreadPoolExecutor newItemRequestExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ITEM_REQUEST_THREADS, ITEM_REQUEST_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r);
+            t.setName("PriceRetriever_ItemRequest");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private void sleep(int delay) {
         try { Thread.sleep(delay * 1000);
         } catch (InterruptedException e) {}
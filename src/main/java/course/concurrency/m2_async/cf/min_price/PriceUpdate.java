@@ -0,0 +1,53 @@
+package course.concurrency.m2_async.cf.min_price;
+
+/**
+ * New minimum price of an item, published by {@link PriceAggregator#getMinPriceUpdates}.
+ */
+public final class PriceUpdate {
+
+    private final long itemId;
+    private final long shopId;
+    private final double minPrice;
+    private final int respondedShops;
+    private final int shopCount;
+
+    PriceUpdate(long itemId, long shopId, double minPrice, int respondedShops, int shopCount) {
+        this.itemId = itemId;
+        this.shopId = shopId;
+        this.minPrice = minPrice;
+        this.respondedShops = respondedShops;
+        this.shopCount = shopCount;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    /**
+     * Shop with the minimum price.
+     */
+    public long getShopId() {
+        return shopId;
+    }
+
+    public double getMinPrice() {
+        return minPrice;
+    }
+
+    /**
+     * Shops answered so far, including the one with the minimum price.
+     */
+    public int getRespondedShops() {
+        return respondedShops;
+    }
+
+    public int getShopCount() {
+        return shopCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("item %d: min price %s at shop %d, %d of %d shops answered",
+                itemId, minPrice, shopId, respondedShops, shopCount);
+    }
+}
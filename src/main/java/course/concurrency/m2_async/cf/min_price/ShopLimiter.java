@@ -0,0 +1,202 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-shop concurrency limits and circuit breakers of {@link PriceAggregator}.
+ * <p>
+ * The limit of a shop adapts by AIMD: a fast answer adds {@code 1 / limit}, so the limit grows by one
+ * per limit of fast answers, while a failure, a timeout or an answer slower than {@code slowCallMillis}
+ * halves it. A request over the limit is rejected before it is submitted and holds no thread.
+ * <p>
+ * After {@code failureThreshold} failures or timeouts in a row the breaker of the shop opens
+ * and the shop is skipped for {@code openMillis}, then a single probe request is let through:
+ * its success closes the breaker, its failure opens it again.
+ */
+public class ShopLimiter {
+
+    public enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    enum Outcome { SUCCESS, FAILURE, TIMEOUT, DROPPED }
+
+    private static final double MIN_LIMIT = 1;
+    private static final double BACKOFF_RATIO = 0.5;
+
+    private final int initialLimit;
+    private final int maxLimit;
+    private final long slowCallNanos;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final Map<Long, Shop> shops = new ConcurrentHashMap<>();
+
+    public ShopLimiter() {
+        this(20, 200, 1000, 5, 5000);
+    }
+
+    public ShopLimiter(int initialLimit, int maxLimit, long slowCallMillis, int failureThreshold, long openMillis) {
+        if (initialLimit < MIN_LIMIT || maxLimit < initialLimit || slowCallMillis <= 0
+                || failureThreshold <= 0 || openMillis < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal limiter config: initialLimit=%d, maxLimit=%d, slowCallMillis=%d, failureThreshold=%d, openMillis=%d",
+                    initialLimit, maxLimit, slowCallMillis, failureThreshold, openMillis));
+        }
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Returns false if the request to the shop should be skipped, otherwise it must be released.
+     */
+    boolean tryAcquire(long shopId) {
+        return shops.computeIfAbsent(shopId, id -> new Shop()).tryAcquire(System.nanoTime());
+    }
+
+    void release(long shopId, Outcome outcome, long latencyNanos) {
+        shops.get(shopId).release(outcome, latencyNanos, System.nanoTime());
+    }
+
+    /**
+     * Current state of every shop ever asked, by shop id.
+     */
+    public Map<Long, ShopStats> getShopStats() {
+        Map<Long, ShopStats> stats = new TreeMap<>();
+        shops.forEach((shopId, shop) -> stats.put(shopId, shop.stats(shopId)));
+        return stats;
+    }
+
+    public ShopStats getShopStats(long shopId) {
+        Shop shop = shops.get(shopId);
+        return shop == null ? null : shop.stats(shopId);
+    }
+
+    // all fields are guarded by this
+    private class Shop {
+        private double limit = initialLimit;
+        private int inFlight;
+        private BreakerState state = BreakerState.CLOSED;
+        private int failuresInRow;
+        private long openUntil;
+        private boolean probing;
+        private long rejected;
+        private long failures;
+
+        synchronized boolean tryAcquire(long now) {
+            if (state == BreakerState.OPEN && now - openUntil >= 0) {
+                state = BreakerState.HALF_OPEN;
+                probing = false;
+            }
+            boolean allowed;
+            if (state == BreakerState.OPEN) {
+                allowed = false;
+            } else if (state == BreakerState.HALF_OPEN) {
+                allowed = !probing;
+                probing = true;
+            } else {
+                allowed = inFlight < (int) limit;
+            }
+            if (!allowed) {
+                rejected++;
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        synchronized void release(Outcome outcome, long latencyNanos, long now) {
+            inFlight--;
+            switch (outcome) {
+                case SUCCESS:
+                    failuresInRow = 0;
+                    if (latencyNanos > slowCallNanos) {
+                        decreaseLimit();
+                    } else {
+                        limit = Math.min(maxLimit, limit + 1 / limit);
+                    }
+                    if (state == BreakerState.HALF_OPEN) {
+                        state = BreakerState.CLOSED;
+                    }
+                    break;
+                case FAILURE:
+                case TIMEOUT:
+                    failures++;
+                    failuresInRow++;
+                    decreaseLimit();
+                    if (state == BreakerState.HALF_OPEN || failuresInRow >= failureThreshold) {
+                        state = BreakerState.OPEN;
+                        openUntil = now + openNanos;
+                    }
+                    break;
+                case DROPPED:
+                    // not answered by the shop as the caller has what it needs
+                    probing = false;
+                    break;
+            }
+        }
+
+        private void decreaseLimit() {
+            limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+        }
+
+        synchronized ShopStats stats(long shopId) {
+            return new ShopStats(shopId, inFlight, (int) limit, state, rejected, failures);
+        }
+    }
+
+    public static final class ShopStats {
+        private final long shopId;
+        private final int inFlight;
+        private final int limit;
+        private final BreakerState breakerState;
+        private final long rejectedCount;
+        private final long failureCount;
+
+        ShopStats(long shopId, int inFlight, int limit, BreakerState breakerState, long rejectedCount, long failureCount) {
+            this.shopId = shopId;
+            this.inFlight = inFlight;
+            this.limit = limit;
+            this.breakerState = breakerState;
+            this.rejectedCount = rejectedCount;
+            this.failureCount = failureCount;
+        }
+
+        public long getShopId() {
+            return shopId;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public BreakerState getBreakerState() {
+            return breakerState;
+        }
+
+        public long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * Failures and timeouts.
+         */
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("shop %d: inFlight=%d, limit=%d, breaker=%s, rejected=%d, failures=%d",
+                    shopId, inFlight, limit, breakerState, rejectedCount, failureCount);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package course.concurrency.m2_async.cf.report;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Stages of a report and their dependencies.
+ * <p>
+ * A stage can depend only on stages added before it, so the graph never has cycles and the order
+ * of addition is a valid order of execution. A run computes the stages the target depends on,
+ * every stage once however many stages use its result, and starts a stage on the executor
+ * as soon as all its dependencies are done, so independent stages run in parallel.
+ * A failed stage fails all stages depending on it.
+ * <p>
+ * The graph can be run any number of times and from many threads, stages are not added meanwhile.
+ */
+public class ReportGraph {
+
+    private final List<Stage<?>> stages = new ArrayList<>();
+
+    public <T> Stage<T> stage(String name, Supplier<T> body) {
+        return add(name, results -> body.get(), List.of());
+    }
+
+    public <A, T> Stage<T> stage(String name, Stage<A> dependency, Function<A, T> body) {
+        return add(name, results -> body.apply(results.get(dependency)), List.of(dependency));
+    }
+
+    public <A, B, T> Stage<T> stage(String name, Stage<A> first, Stage<B> second, BiFunction<A, B, T> body) {
+        return add(name, results -> body.apply(results.get(first), results.get(second)), List.of(first, second));
+    }
+
+    /**
+     * Stage of any number of dependencies, their results are read from {@link Results}.
+     */
+    public <T> Stage<T> stage(String name, Collection<Stage<?>> dependencies, Function<Results, T> body) {
+        return add(name, body, List.copyOf(dependencies));
+    }
+
+    private synchronized <T> Stage<T> add(String name, Function<Results, T> body, List<Stage<?>> dependencies) {
+        for (Stage<?> dependency : dependencies) {
+            if (dependency.graph != this) {
+                throw new IllegalArgumentException("Stage " + dependency.name + " belongs to another graph");
+            }
+        }
+        Stage<T> stage = new Stage<>(this, stages.size(), name, body, dependencies);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Starts the target and the stages it depends on, does not wait for them.
+     */
+    public <T> ReportRun<T> run(Stage<T> target, Executor executor) {
+        if (target.graph != this) {
+            throw new IllegalArgumentException("Stage " + target.name + " belongs to another graph");
+        }
+        ReportRun<T> run = new ReportRun<>(target);
+        // dependencies always have lower indices, so a reverse sweep finds all of them
+        boolean[] required = new boolean[target.index + 1];
+        required[target.index] = true;
+        for (int i = target.index; i >= 0; i--) {
+            if (required[i]) {
+                for (Stage<?> dependency : stages.get(i).dependencies) {
+                    required[dependency.index] = true;
+                }
+            }
+        }
+        Map<Stage<?>, CompletableFuture<?>> futures = new HashMap<>();
+        for (int i = 0; i <= target.index; i++) {
+            if (required[i]) {
+                Stage<?> stage = stages.get(i);
+                futures.put(stage, start(stage, futures, run, executor));
+            }
+        }
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> result = (CompletableFuture<T>) futures.get(target);
+        run.setResult(result);
+        return run;
+    }
+
+    private static <T> CompletableFuture<T> start(Stage<T> stage, Map<Stage<?>, CompletableFuture<?>> futures,
+                                                  ReportRun<?> run, Executor executor) {
+        Map<Stage<?>, CompletableFuture<?>> dependencies = new HashMap<>();
+        for (Stage<?> dependency : stage.dependencies) {
+            dependencies.put(dependency, futures.get(dependency));
+        }
+        Results results = new Results(dependencies);
+        if (dependencies.isEmpty()) {
+            return CompletableFuture.supplyAsync(() -> run.time(stage, () -> stage.body.apply(results)), executor);
+        }
+        return CompletableFuture.allOf(dependencies.values().toArray(CompletableFuture[]::new)).thenApplyAsync(
+                v -> run.time(stage, () -> stage.body.apply(results)), executor);
+    }
+
+    public static final class Stage<T> {
+        private final ReportGraph graph;
+        private final int index;
+        private final String name;
+        private final Function<Results, T> body;
+        private final List<Stage<?>> dependencies;
+
+        private Stage(ReportGraph graph, int index, String name, Function<Results, T> body, List<Stage<?>> dependencies) {
+            this.graph = graph;
+            this.index = index;
+            this.name = name;
+            this.body = body;
+            this.dependencies = dependencies;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        List<Stage<?>> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Results of the dependencies of a stage.
+     */
+    public static final class Results {
+        private final Map<Stage<?>, CompletableFuture<?>> dependencies;
+
+        private Results(Map<Stage<?>, CompletableFuture<?>> dependencies) {
+            this.dependencies = dependencies;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(Stage<T> stage) {
+            CompletableFuture<?> future = dependencies.get(stage);
+            if (future == null) {
+                throw new IllegalArgumentException("Stage " + stage.name + " is not a dependency");
+            }
+            return (T) future.join(); // done, the stage runs after all its dependencies
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package course.concurrency.m2_async.cf.report;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * One run of a {@link ReportGraph}: the result of the target stage and timings of the stages.
+ * <p>
+ * Times are in nanoseconds since the run was started. The critical path is the chain of stages
+ * which ends with the target, each stage preceded by its dependency which finished last:
+ * speeding up any other stage does not make the report faster.
+ */
+public class ReportRun<T> {
+
+    private final long startNanos = System.nanoTime();
+    private final ReportGraph.Stage<T> target;
+    private final Map<ReportGraph.Stage<?>, StageTiming> timings = new ConcurrentHashMap<>();
+    private volatile CompletableFuture<T> result;
+
+    ReportRun(ReportGraph.Stage<T> target) {
+        this.target = target;
+    }
+
+    void setResult(CompletableFuture<T> result) {
+        this.result = result;
+    }
+
+    <R> R time(ReportGraph.Stage<R> stage, Supplier<R> body) {
+        long ready = 0;
+        for (ReportGraph.Stage<?> dependency : stage.getDependencies()) {
+            ready = Math.max(ready, timings.get(dependency).getFinishNanos());
+        }
+        long start = System.nanoTime() - startNanos;
+        boolean failed = true;
+        try {
+            R value = body.get();
+            failed = false;
+            return value;
+        } finally {
+            timings.put(stage, new StageTiming(stage.getName(), ready, start, System.nanoTime() - startNanos, failed));
+        }
+    }
+
+    public CompletableFuture<T> getResult() {
+        return result;
+    }
+
+    /**
+     * Waits for the report, a failure of any stage is thrown as {@link java.util.concurrent.CompletionException}.
+     */
+    public T join() {
+        return result.join();
+    }
+
+    /**
+     * Timings of the stages finished so far, in order of start.
+     */
+    public List<StageTiming> getTimings() {
+        List<StageTiming> sorted = new ArrayList<>(timings.values());
+        sorted.sort(Comparator.comparingLong(StageTiming::getStartNanos));
+        return sorted;
+    }
+
+    /**
+     * Stages of the critical path from the first to the target, the report must be completed successfully.
+     */
+    public List<StageTiming> getCriticalPath() {
+        if (!result.isDone() || result.isCompletedExceptionally()) {
+            throw new IllegalStateException("Report of " + target.getName() + " is not completed");
+        }
+        LinkedList<StageTiming> path = new LinkedList<>();
+        ReportGraph.Stage<?> stage = target;
+        while (stage != null) {
+            path.addFirst(timings.get(stage));
+            ReportGraph.Stage<?> last = null;
+            for (ReportGraph.Stage<?> dependency : stage.getDependencies()) {
+                if (last == null || timings.get(dependency).getFinishNanos() > timings.get(last).getFinishNanos()) {
+                    last = dependency;
+                }
+            }
+            stage = last;
+        }
+        return path;
+    }
+
+    /**
+     * Time spent running the stages of the critical path, without waiting for threads.
+     */
+    public long getCriticalPathNanos() {
+        return getCriticalPath().stream().mapToLong(StageTiming::getDurationNanos).sum();
+    }
+
+    /**
+     * Time from the start of the run to the result.
+     */
+    public long getElapsedNanos() {
+        List<StageTiming> path = getCriticalPath();
+        return path.get(path.size() - 1).getFinishNanos();
+    }
+
+    public static final class StageTiming {
+        private final String stage;
+        private final long readyNanos;
+        private final long startNanos;
+        private final long finishNanos;
+        private final boolean failed;
+
+        StageTiming(String stage, long readyNanos, long startNanos, long finishNanos, boolean failed) {
+            this.stage = stage;
+            this.readyNanos = readyNanos;
+            this.startNanos = startNanos;
+            this.finishNanos = finishNanos;
+            this.failed = failed;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        /**
+         * When the last dependency finished, zero for a stage without dependencies.
+         */
+        public long getReadyNanos() {
+            return readyNanos;
+        }
+
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        public long getFinishNanos() {
+            return finishNanos;
+        }
+
+        public long getDurationNanos() {
+            return finishNanos - startNanos;
+        }
+
+        /**
+         * Time the stage was ready but waited for a thread of the executor.
+         */
+        public long getQueuedNanos() {
+            return startNanos - readyNanos;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: start=%dms, duration=%dms, queued=%dms%s", stage,
+                    TimeUnit.NANOSECONDS.toMillis(startNanos), TimeUnit.NANOSECONDS.toMillis(getDurationNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(getQueuedNanos()), failed ? ", failed" : "");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package course.concurrency.m2_async.cf.report;
+
+import course.concurrency.m2_async.cf.LoadGenerator;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+public class ReportServiceGraph {
+
+    private final ExecutorService executor;
+
+    private LoadGenerator loadGenerator = new LoadGenerator();
+
+    private final ReportGraph graph = new ReportGraph();
+    private final ReportGraph.Stage<Others.Report> report;
+
+    public ReportServiceGraph() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ReportServiceGraph(ExecutorService executor) {
+        this.executor = executor;
+        ReportGraph.Stage<Collection<Others.Item>> items = graph.stage("items", this::getItems);
+        ReportGraph.Stage<Collection<Others.Customer>> customers = graph.stage("customers", this::getActiveCustomers);
+        report = graph.stage("report", items, customers, this::combineResults);
+    }
+
+    public Others.Report getReport() {
+        return graph.run(report, executor).join();
+    }
+
+    /**
+     * Report with timings of its stages.
+     */
+    public ReportRun<Others.Report> runReport() {
+        return graph.run(report, executor);
+    }
+
+    private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers) {
+        return new Others.Report();
+    }
+
+    private Collection<Others.Customer> getActiveCustomers() {
+        loadGenerator.work();
+        loadGenerator.work();
+        return List.of(new Others.Customer(), new Others.Customer());
+    }
+
+    private Collection<Others.Item> getItems() {
+        loadGenerator.work();
+        return List.of(new Others.Item(), new Others.Item());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
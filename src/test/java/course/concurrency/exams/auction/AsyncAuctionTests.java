@@ -0,0 +1,117 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncAuctionTests {
+
+    private static final int PRODUCERS = 8;
+    private static final int BIDS_PER_PRODUCER = 10_000;
+
+    private final Notifier notifier = new Notifier() {
+        @Override
+        public void sendOutdatedMessage(Bid bid) {}
+    };
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBestBidWins() throws Exception {
+        AsyncAuction auction = new AsyncAuction(new AuctionPessimistic(notifier), writer, 64);
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+
+        List<CompletableFuture<List<CompletableFuture<Boolean>>>> submitted = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            long participant = producer;
+            submitted.add(CompletableFuture.supplyAsync(() -> {
+                List<CompletableFuture<Boolean>> results = new ArrayList<>();
+                for (long i = 0; i < BIDS_PER_PRODUCER; i++) {
+                    long price = i * PRODUCERS + participant + 1;
+                    results.add(auction.proposeAsync(new Bid(price, participant, price)).toCompletableFuture());
+                }
+                return results;
+            }, producers));
+        }
+
+        long accepted = 0;
+        for (CompletableFuture<List<CompletableFuture<Boolean>>> producer : submitted) {
+            for (CompletableFuture<Boolean> result : producer.get(5, TimeUnit.SECONDS)) {
+                if (result.get(5, TimeUnit.SECONDS)) {
+                    accepted++;
+                }
+            }
+        }
+        producers.shutdown();
+
+        long maxPrice = (long) PRODUCERS * BIDS_PER_PRODUCER;
+        assertEquals(maxPrice, auction.getLatestBid().getPrice());
+        assertTrue(accepted >= 1 && accepted <= maxPrice);
+    }
+
+    @Test
+    public void testRejectsLowerBidsOfBatch() throws Exception {
+        List<Runnable> writes = new ArrayList<>();
+        AsyncAuction auction = new AsyncAuction(new AuctionOptimistic(notifier), writes::add, 64);
+
+        CompletableFuture<Boolean> low = auction.proposeAsync(new Bid(1, 1, 10)).toCompletableFuture();
+        CompletableFuture<Boolean> high = auction.proposeAsync(new Bid(2, 2, 30)).toCompletableFuture();
+        CompletableFuture<Boolean> tie = auction.proposeAsync(new Bid(3, 3, 30)).toCompletableFuture();
+        assertEquals(1, writes.size()); // writer is scheduled once
+        assertFalse(high.isDone());
+
+        writes.get(0).run();
+
+        assertFalse(low.get());
+        assertTrue(high.get());
+        assertFalse(tie.get());
+        assertEquals(2, auction.getLatestBid().getId());
+    }
+
+    @Test
+    public void testRejectsAfterStop() throws Exception {
+        AuctionStoppable delegate = new AuctionStoppablePessimistic(notifier);
+        AsyncAuction auction = new AsyncAuction(delegate, writer, 64);
+
+        assertTrue(auction.proposeAsync(new Bid(1, 1, 10)).toCompletableFuture().get(1, TimeUnit.SECONDS));
+        delegate.stopAuction();
+
+        assertFalse(auction.proposeAsync(new Bid(2, 2, 20)).toCompletableFuture().get(1, TimeUnit.SECONDS));
+        assertEquals(1, auction.getLatestBid().getId());
+    }
+
+    @Test
+    public void testFailsProposalsRejectedByExecutor() throws Exception {
+        AtomicBoolean rejecting = new AtomicBoolean(true);
+        AsyncAuction auction = new AsyncAuction(new AuctionPessimistic(notifier), task -> {
+            if (rejecting.get()) {
+                throw new RejectedExecutionException("Writer pool is full");
+            }
+            writer.execute(task);
+        }, 64);
+
+        CompletableFuture<Boolean> rejected = auction.proposeAsync(new Bid(1, 1, 100)).toCompletableFuture();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+        rejecting.set(false);
+        assertTrue(auction.proposeAsync(new Bid(2, 2, 200)).toCompletableFuture().get(1, TimeUnit.SECONDS));
+        assertEquals(200, auction.getLatestBid().getPrice());
+    }
+}
@@ -0,0 +1,121 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuctionCloserTests {
+
+    private static final int LOTS = 10_000;
+    private static final long MAX_DELAY_MILLIS = 300;
+
+    private final Notifier notifier = new Notifier() {
+        @Override
+        public void sendOutdatedMessage(Bid bid) {}
+    };
+    private final Map<Long, Bid> winners = new ConcurrentHashMap<>();
+    private AuctionCloser closer;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        closer.shutdown();
+        closer.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testClosesAllLotsAfterDeadline() throws InterruptedException {
+        CountDownLatch allClosed = new CountDownLatch(LOTS);
+        // small wheel to make lots wait for several turns
+        closer = new AuctionCloser((lotId, winner) -> {
+            winners.put(lotId, winner);
+            allClosed.countDown();
+        }, 1, 64);
+
+        AuctionStoppable[] auctions = new AuctionStoppable[LOTS];
+        long scheduledAt = System.nanoTime();
+        for (int lot = 0; lot < LOTS; lot++) {
+            auctions[lot] = lot % 2 == 0 ? new AuctionStoppableOptimistic(notifier) : new AuctionStoppablePessimistic(notifier);
+            auctions[lot].propose(new Bid(lot, lot, lot + 1));
+            closer.schedule(lot, auctions[lot], lot % MAX_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(allClosed.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - scheduledAt >= TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS - 1));
+        for (int lot = 0; lot < LOTS; lot++) {
+            assertEquals(lot + 1, winners.get((long) lot).getPrice());
+            assertFalse(auctions[lot].propose(new Bid(lot, lot, Long.MAX_VALUE)));
+        }
+        assertEquals(LOTS, closer.getClosedCount());
+        assertEquals(0, closer.getPendingCount());
+        assertEquals(LOTS, closer.getLatenessMicros().getCount());
+    }
+
+    @Test
+    public void testDoesNotCloseBeforeDeadline() throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        closer = new AuctionCloser((lotId, winner) -> closed.countDown());
+        AuctionStoppable auction = new AuctionStoppableOptimistic(notifier);
+
+        closer.schedule(1, auction, 200, TimeUnit.MILLISECONDS);
+
+        assertFalse(closed.await(100, TimeUnit.MILLISECONDS));
+        assertTrue(auction.propose(new Bid(1, 1, 10)));
+        assertTrue(closed.await(1, TimeUnit.SECONDS));
+        assertFalse(auction.propose(new Bid(2, 2, 20)));
+    }
+
+    @Test
+    public void testCancelledLotStaysOpen() throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        closer = new AuctionCloser((lotId, winner) -> {
+            winners.put(lotId, winner);
+            closed.countDown();
+        });
+        AuctionStoppable cancelled = new AuctionStoppableOptimistic(notifier);
+        AuctionStoppable closedLater = new AuctionStoppableOptimistic(notifier);
+
+        AuctionCloser.Timeout timeout = closer.schedule(1, cancelled, 20, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        closer.schedule(2, closedLater, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(closed.await(1, TimeUnit.SECONDS));
+        assertEquals(1, winners.size());
+        assertTrue(winners.containsKey(2L));
+        assertTrue(cancelled.propose(new Bid(1, 1, 10)));
+        assertFalse(timeout.cancel());
+        assertEquals(1, closer.getCancelledCount());
+    }
+
+    @Test
+    public void testSurvivesFailingAuction() throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        closer = new AuctionCloser((lotId, winner) -> {
+            winners.put(lotId, winner);
+            closed.countDown();
+        });
+        AuctionStoppable failing = new AuctionStoppableOptimistic(notifier) {
+            @Override
+            public Bid stopAuction() {
+                throw new IllegalStateException("Auction is broken");
+            }
+        };
+
+        closer.schedule(1, failing, 10, TimeUnit.MILLISECONDS);
+        closer.schedule(2, new AuctionStoppableOptimistic(notifier), 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(closed.await(1, TimeUnit.SECONDS));
+        assertEquals(1, winners.size());
+        assertTrue(winners.containsKey(2L));
+        assertEquals(2, closer.getClosedCount());
+        assertEquals(1, closer.getCloseFailureCount());
+        assertEquals(0, closer.getPendingCount());
+    }
+}
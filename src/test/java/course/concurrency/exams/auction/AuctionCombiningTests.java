@@ -0,0 +1,54 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.RepeatedTest;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuctionCombiningTests {
+
+    private static final int threads = 16;
+    private static final int iterations = 50_000;
+
+    @RepeatedTest(5)
+    public void testEveryAcceptedBidIsNotified() throws InterruptedException {
+        LongAdder sentMessages = new LongAdder();
+        Notifier notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {
+                sentMessages.increment();
+            }
+        };
+        // fewer slots than threads, so some proposers fall back to the direct CAS
+        Auction auction = new AuctionCombining(notifier, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(1);
+        LongAdder accepted = new LongAdder();
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                for (int it = 0; it < iterations; it++) {
+                    long price = ThreadLocalRandom.current().nextLong(iterations * 10L);
+                    if (auction.propose(new Bid(price, price, price))) {
+                        accepted.increment();
+                    }
+                }
+                auction.propose(new Bid(-1, -1, iterations * 10L)); // same maximum from every thread
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(iterations * 10L, auction.getLatestBid().getPrice());
+        assertEquals(accepted.sum() + 1, sentMessages.sum());
+    }
+}
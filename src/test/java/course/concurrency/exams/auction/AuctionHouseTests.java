@@ -0,0 +1,93 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuctionHouseTests {
+
+    private static final int lots = 10_000;
+    private static final int bidsPerLot = 20;
+    private static final int poolSize = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private final LongAdder sentMessages = new LongAdder();
+    private Notifier notifier;
+
+    @BeforeEach
+    public void setup() {
+        notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {
+                sentMessages.increment();
+            }
+        };
+    }
+
+    @Test
+    public void testUnknownLot() {
+        AuctionHouse house = new AuctionHouse(notifier);
+
+        assertSame(Bid.DUMMY, house.getLatestBid(42));
+        assertEquals(0, house.lotCount());
+    }
+
+    @Test
+    public void testLotsAreIndependent() {
+        AuctionHouse house = new AuctionHouse(notifier);
+
+        assertTrue(house.propose(1, new Bid(1, 1, 100)));
+        assertTrue(house.propose(2, new Bid(2, 2, 50)));
+        assertFalse(house.propose(1, new Bid(3, 3, 70)));
+        assertTrue(house.lot(2).propose(new Bid(4, 4, 70)));
+
+        assertEquals(100, house.getLatestBid(1).getPrice());
+        assertEquals(70, house.lot(2).getLatestBid().getPrice());
+        assertEquals(2, house.lotCount());
+    }
+
+    @RepeatedTest(5)
+    public void testConcurrentBidsWithResize() throws InterruptedException {
+        // single stripe of minimal size, so lots are registered while the table grows
+        AuctionHouse house = new AuctionHouse(notifier, 1, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        CountDownLatch latch = new CountDownLatch(1);
+        LongAdder accepted = new LongAdder();
+
+        for (int i = 0; i < poolSize; i++) {
+            int shift = i;
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                for (int price = 1; price <= bidsPerLot; price++) {
+                    for (long lotId = 0; lotId < lots; lotId++) {
+                        long value = price * poolSize + shift;
+                        if (house.propose(lotId, new Bid(value, shift, value))) {
+                            accepted.increment();
+                        }
+                    }
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        long expectedPrice = bidsPerLot * poolSize + poolSize - 1;
+        for (long lotId = 0; lotId < lots; lotId++) {
+            assertEquals(expectedPrice, house.getLatestBid(lotId).getPrice());
+        }
+        assertEquals(lots, house.lotCount());
+        assertEquals(accepted.sum(), sentMessages.sum());
+    }
+}
@@ -3,9 +3,10 @@ package course.concurrency.exams.auction;
 import org.junit.jupiter.api.*;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class AuctionStoppableTests {
 
@@ -57,6 +58,12 @@ public class AuctionStoppableTests {
         testCorrectLatestBid(optimistic, "optimistic");
     }
 
+    @RepeatedTest(TEST_COUNT)
+    public void testPrimitive() throws InterruptedException {
+        AuctionStoppable primitive = new AuctionStoppablePrimitive(notifier);
+        testCorrectLatestBid(primitive, "primitive");
+    }
+
     public void testCorrectLatestBid(AuctionStoppable auction, String tag) throws InterruptedException {
         CountDownLatch latch = new CountDownLatch(1);
 
@@ -96,6 +103,35 @@ public class AuctionStoppableTests {
         testStoppedAuction(auction);
     }
 
+    // stops while the prices grow, does not rely on a price reached only with enough processors
+    @Test
+    public void testStoppedAuctionPrimitive() throws InterruptedException {
+        AuctionStoppable auction = new AuctionStoppablePrimitive(notifier);
+        int proposers = Math.max(2, poolSize);
+        ExecutorService proposing = Executors.newFixedThreadPool(proposers);
+        AtomicLong nextPrice = new AtomicLong();
+        for (int i = 0; i < proposers; i++) {
+            proposing.submit(() -> {
+                for (int it = 0; it < 100_000; it++) {
+                    long value = nextPrice.incrementAndGet();
+                    auction.propose(new Bid(value, value, value));
+                }
+            });
+        }
+        while (auction.getLatestBid().getPrice() < 10_000) {
+            Thread.sleep(1);
+        }
+
+        Bid stopped = auction.stopAuction();
+        proposing.shutdown();
+        assertTrue(proposing.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(stopped.getPrice() >= 10_000);
+        assertEquals(stopped.getPrice(), auction.getLatestBid().getPrice());
+        assertEquals(stopped.getId(), auction.getLatestBid().getId());
+        assertFalse(auction.propose(new Bid(-1, -1, Long.MAX_VALUE)));
+    }
+
     public void testStoppedAuction(AuctionStoppable auction) throws InterruptedException {
         CountDownLatch latch = new CountDownLatch(1);
         int priceToStop = iterations;
@@ -0,0 +1,159 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static course.concurrency.exams.auction.BatchingNotifier.OverflowPolicy.BLOCK;
+import static course.concurrency.exams.auction.BatchingNotifier.OverflowPolicy.DROP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchingNotifierTests {
+
+    private final List<List<Bid>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch senderReleased = new CountDownLatch(1);
+    private BatchingNotifier notifier;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        senderReleased.countDown();
+        notifier.shutdown();
+        notifier.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCoalescesByParticipant() throws InterruptedException {
+        notifier = new BatchingNotifier(10, 10, 50, DROP, batches::add);
+
+        notifier.sendOutdatedMessage(new Bid(1, 1, 10));
+        notifier.sendOutdatedMessage(new Bid(2, 2, 20));
+        notifier.sendOutdatedMessage(new Bid(3, 1, 30));
+        awaitSent(2);
+
+        assertEquals(1, batches.size());
+        List<Bid> batch = batches.get(0);
+        assertEquals(2, batch.size());
+        assertEquals(3, batch.stream().filter(bid -> bid.getParticipantId() == 1).findAny().get().getId());
+        assertEquals(1, notifier.getCoalescedCount());
+    }
+
+    @Test
+    public void testSplitsByBatchSize() throws InterruptedException {
+        notifier = new BatchingNotifier(100, 3, 50, DROP, batches::add);
+
+        for (long participant = 1; participant <= 7; participant++) {
+            notifier.sendOutdatedMessage(new Bid(participant, participant, participant));
+        }
+        awaitSent(7);
+
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 3));
+        assertEquals(7, batches.stream().mapToInt(List::size).sum());
+        assertEquals(batches.size(), notifier.getBatchSizes().getCount());
+    }
+
+    @Test
+    public void testDropsOnOverflow() throws InterruptedException {
+        notifier = new BatchingNotifier(2, 1, 0, DROP, blockingSender());
+
+        notifier.sendOutdatedMessage(new Bid(1, 1, 1)); // taken by the worker
+        awaitQueueDepth(0);
+        notifier.sendOutdatedMessage(new Bid(2, 2, 2));
+        notifier.sendOutdatedMessage(new Bid(3, 3, 3));
+        notifier.sendOutdatedMessage(new Bid(4, 4, 4));
+
+        assertEquals(2, notifier.getQueueDepth());
+        assertEquals(1, notifier.getDroppedCount());
+    }
+
+    @Test
+    public void testBlocksOnOverflow() throws InterruptedException {
+        notifier = new BatchingNotifier(1, 1, 0, BLOCK, blockingSender());
+
+        notifier.sendOutdatedMessage(new Bid(1, 1, 1)); // taken by the worker
+        awaitQueueDepth(0);
+        notifier.sendOutdatedMessage(new Bid(2, 2, 2));
+        Thread producer = new Thread(() -> notifier.sendOutdatedMessage(new Bid(3, 3, 3)));
+        producer.start();
+
+        Thread.sleep(100);
+        assertEquals(Thread.State.WAITING, producer.getState());
+
+        senderReleased.countDown();
+        producer.join(1000);
+        awaitSent(3);
+        assertEquals(0, notifier.getDroppedCount());
+    }
+
+    @Test
+    public void testPluggedIntoAuction() throws InterruptedException {
+        notifier = new BatchingNotifier(10, 10, 10, DROP, batches::add);
+        Auction auction = new AuctionPessimistic(notifier);
+
+        auction.propose(new Bid(1, 1, 10));
+        auction.propose(new Bid(2, 2, 20));
+        auction.propose(new Bid(3, 3, 30));
+        awaitSent(2);
+
+        assertEquals(2, notifier.getSentCount()); // dummy bid is not sent
+    }
+
+    @Test
+    public void testDropsMessageRacingWithShutdown() throws InterruptedException {
+        notifier = new BatchingNotifier(10, 10, 0, DROP, batches::add);
+        CountDownLatch checked = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        // participant id is read after the running check and before the enqueue
+        Bid racing = new Bid(1, 1, 1) {
+            @Override
+            public long getParticipantId() {
+                checked.countDown();
+                try {
+                    stopped.await();
+                } catch (InterruptedException ignored) {}
+                return super.getParticipantId();
+            }
+        };
+        Thread producer = new Thread(() -> notifier.sendOutdatedMessage(racing));
+        producer.start();
+
+        checked.await();
+        notifier.shutdown();
+        assertTrue(notifier.awaitTermination(1, TimeUnit.SECONDS));
+        stopped.countDown();
+        producer.join(1000);
+
+        assertEquals(0, notifier.getQueueDepth());
+        assertEquals(1, notifier.getDroppedCount());
+        assertEquals(0, notifier.getEnqueuedCount());
+    }
+
+    private Consumer<List<Bid>> blockingSender() {
+        return batch -> {
+            try {
+                senderReleased.await();
+            } catch (InterruptedException ignored) {}
+            batches.add(batch);
+        };
+    }
+
+    private void awaitSent(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (notifier.getSentCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, notifier.getSentCount());
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (notifier.getQueueDepth() != depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static course.concurrency.exams.auction.BidAdmissionFilter.Decision.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BidAdmissionFilterTests {
+
+    @Test
+    public void testRejectsNotHigherBidsOfParticipant() {
+        BidAdmissionFilter filter = new BidAdmissionFilter(1000, 100);
+
+        assertEquals(ADMITTED, filter.admit(new Bid(1, 1, 10)));
+        assertEquals(DUPLICATE, filter.admit(new Bid(1, 1, 10)));
+        assertEquals(DUPLICATE, filter.admit(new Bid(2, 1, 5)));
+        assertEquals(ADMITTED, filter.admit(new Bid(3, 2, 5))); // another participant
+        assertEquals(ADMITTED, filter.admit(new Bid(4, 1, 11)));
+
+        assertEquals(3, filter.getAdmittedCount());
+        assertEquals(2, filter.getDuplicateCount());
+    }
+
+    @Test
+    public void testLimitsRatePerParticipant() throws InterruptedException {
+        BidAdmissionFilter filter = new BidAdmissionFilter(20, 3);
+
+        for (int price = 1; price <= 3; price++) {
+            assertEquals(ADMITTED, filter.admit(new Bid(price, 1, price)));
+        }
+        assertEquals(RATE_LIMITED, filter.admit(new Bid(4, 1, 4)));
+        assertEquals(ADMITTED, filter.admit(new Bid(5, 2, 5)));
+
+        Thread.sleep(100); // two tokens at 20 per second
+        assertEquals(ADMITTED, filter.admit(new Bid(6, 1, 6)));
+        assertEquals(1, filter.getRateLimitedCount());
+    }
+
+    @Test
+    public void testRateLimitedBidIsNotDuplicate() {
+        BidAdmissionFilter filter = new BidAdmissionFilter(1, 1);
+
+        assertEquals(ADMITTED, filter.admit(new Bid(1, 1, 10)));
+        assertEquals(RATE_LIMITED, filter.admit(new Bid(2, 1, 20)));
+        assertEquals(DUPLICATE, filter.admit(new Bid(3, 1, 10)));
+        assertEquals(RATE_LIMITED, filter.admit(new Bid(4, 1, 20)));
+    }
+
+    @Test
+    public void testConcurrentParticipants() throws Exception {
+        int threads = 8;
+        int participantsPerThread = 1000;
+        BidAdmissionFilter filter = new BidAdmissionFilter(1, 2, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long first = (long) t * participantsPerThread;
+            futures.add(executor.submit(() -> {
+                for (long participant = first; participant < first + participantsPerThread; participant++) {
+                    for (long price = 1; price <= 3; price++) {
+                        filter.admit(new Bid(price, participant, price));
+                        filter.admit(new Bid(price, participant, price));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        int participants = threads * participantsPerThread;
+        assertEquals(participants, filter.getParticipantCount());
+        assertEquals(2L * participants, filter.getAdmittedCount());
+        assertEquals(2L * participants, filter.getRateLimitedCount()); // third price and its resend
+        assertEquals(2L * participants, filter.getDuplicateCount());
+    }
+}
@@ -0,0 +1,179 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BidJournalTests {
+
+    private static final int SEGMENT_RECORDS = 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRecoversLatestBidOfEveryAuction() {
+        Path file = dir.resolve("bids.journal");
+        try (BidJournal journal = new BidJournal(file, 10, SEGMENT_RECORDS)) {
+            journal.append(1, new Bid(1, 10, 100));
+            journal.append(2, new Bid(2, 20, 50));
+            journal.append(1, new Bid(3, 30, 300));
+            journal.append(1, new Bid(4, 40, 200)); // appended out of order by a slower thread
+        }
+
+        try (BidJournal journal = new BidJournal(file, 10, SEGMENT_RECORDS)) {
+            Map<Long, Bid> recovered = journal.getRecoveredBids();
+
+            assertEquals(2, recovered.size());
+            assertEquals(3, recovered.get(1L).getId());
+            assertEquals(300, recovered.get(1L).getPrice());
+            assertEquals(30, recovered.get(1L).getParticipantId());
+            assertEquals(50, recovered.get(2L).getPrice());
+            assertEquals(4, journal.getAppendedCount());
+        }
+    }
+
+    @Test
+    public void testSkipsTornRecord() throws IOException {
+        Path file = dir.resolve("bids.journal");
+        try (BidJournal journal = new BidJournal(file, 10, SEGMENT_RECORDS)) {
+            journal.append(1, new Bid(1, 10, 100));
+            journal.append(1, new Bid(2, 20, 200));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // price of the second record is written, but the crash happened before its checksum
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, 999), BidJournal.RECORD_SIZE + 3 * Long.BYTES);
+        }
+
+        try (BidJournal journal = new BidJournal(file, 10, SEGMENT_RECORDS)) {
+            assertEquals(100, journal.getRecoveredBids().get(1L).getPrice());
+            assertEquals(1, journal.getAppendedCount());
+        }
+    }
+
+    @Test
+    public void testJournaledAuctionRestoresState() throws InterruptedException {
+        Path file = dir.resolve("bids.journal");
+        Notifier notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {
+            }
+        };
+        int threads = 4;
+        int bidsPerThread = SEGMENT_RECORDS; // several segments
+
+        try (BidJournal journal = new BidJournal(file, 1, SEGMENT_RECORDS)) {
+            Auction auction = new JournaledAuction(7, new AuctionOptimistic(notifier), journal, notifier);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int i = 0; i < threads; i++) {
+                int shift = i;
+                executor.submit(() -> {
+                    for (long price = 1; price <= bidsPerThread; price++) {
+                        long value = price * threads + shift;
+                        auction.propose(new Bid(value, shift, value));
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        try (BidJournal journal = new BidJournal(file, 1, SEGMENT_RECORDS)) {
+            Auction restored = new JournaledAuction(7, new AuctionPessimistic(notifier), journal, notifier);
+            assertEquals((long) bidsPerThread * threads + threads - 1, restored.getLatestBid().getPrice());
+        }
+    }
+
+    @Test
+    public void testRestoresStateWithoutNotifying() {
+        Path file = dir.resolve("bids.journal");
+        try (BidJournal journal = new BidJournal(file, 10, SEGMENT_RECORDS)) {
+            journal.append(7, new Bid(1, 10, 100));
+        }
+        List<Bid> notified = new CopyOnWriteArrayList<>();
+        Notifier notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {
+                notified.add(bid);
+            }
+        };
+
+        try (BidJournal journal = new BidJournal(file, 10, SEGMENT_RECORDS)) {
+            Auction restored = new JournaledAuction(7, new AuctionOptimistic(notifier), journal, notifier);
+
+            assertEquals(100, restored.getLatestBid().getPrice());
+            assertTrue(notified.isEmpty());
+            assertFalse(restored.propose(new Bid(2, 20, 100)));
+            assertTrue(restored.propose(new Bid(3, 30, 150)));
+            assertEquals(150, restored.getLatestBid().getPrice());
+            assertTrue(restored.propose(new Bid(4, 40, 200)));
+        }
+        // the recovered bidder is told once, the delegate's initial bid stands for it
+        assertEquals(List.of(10L, 30L), notified.stream()
+                .filter(bid -> bid != Bid.DUMMY)
+                .map(Bid::getParticipantId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testDiscardsBidRejectedByDelegate() {
+        Path file = dir.resolve("bids.journal");
+        Auction rejecting = new Auction() {
+            @Override
+            public boolean propose(Bid bid) {
+                return false; // outbid right after the check
+            }
+
+            @Override
+            public Bid getLatestBid() {
+                return Bid.DUMMY;
+            }
+        };
+        try (BidJournal journal = new BidJournal(file, 10, SEGMENT_RECORDS)) {
+            Auction auction = new JournaledAuction(7, rejecting, journal, new Notifier());
+
+            assertFalse(auction.propose(new Bid(1, 10, 100)));
+            assertEquals(1, journal.getAppendedCount());
+        }
+
+        try (BidJournal journal = new BidJournal(file, 10, SEGMENT_RECORDS)) {
+            assertTrue(journal.getRecoveredBids().isEmpty());
+        }
+    }
+
+    @Test
+    public void testDoesNotProposeWhenJournalFull() {
+        try (BidJournal journal = new BidJournal(dir.resolve("bids.journal"), 10_000, 1)) {
+            for (int i = 0; i < 1024; i++) {
+                journal.append(1, new Bid(i, 1, i + 1));
+            }
+            Auction delegate = new AuctionOptimistic(new Notifier());
+            Auction auction = new JournaledAuction(7, delegate, journal, new Notifier());
+
+            assertThrows(IllegalStateException.class, () -> auction.propose(new Bid(1, 10, 100)));
+            assertSame(Bid.DUMMY, delegate.getLatestBid());
+        }
+    }
+
+    @Test
+    public void testFailsWhenFull() {
+        try (BidJournal journal = new BidJournal(dir.resolve("bids.journal"), 10_000, 1)) {
+            for (int i = 0; i < 1024; i++) { // a segment per record
+                journal.append(1, new Bid(i, 1, i + 1));
+            }
+
+            assertThrows(IllegalStateException.class, () -> journal.append(1, new Bid(1024, 1, 1025)));
+        }
+    }
+}
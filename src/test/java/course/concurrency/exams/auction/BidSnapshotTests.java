@@ -0,0 +1,51 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BidSnapshotTests {
+
+    private static final Notifier notifier = new Notifier() {
+        @Override
+        public void sendOutdatedMessage(Bid bid) {
+        }
+    };
+
+    static Stream<Function<Notifier, Auction>> auctions() {
+        return Stream.of(
+                AuctionOptimistic::new,
+                AuctionPessimistic::new,
+                AuctionStoppableOptimistic::new,
+                AuctionStoppablePessimistic::new,
+                AuctionStoppablePrimitive::new,
+                AuctionCombining::new,
+                n -> new AuctionHouse(n).lot(1));
+    }
+
+    @ParameterizedTest
+    @MethodSource("auctions")
+    public void testVersionChangesWithLatestBid(Function<Notifier, Auction> factory) {
+        Auction auction = factory.apply(notifier);
+
+        assertNull(auction.getLatestBidIfChanged(0));
+
+        auction.propose(new Bid(1, 1, 10));
+        BidSnapshot first = auction.getLatestBidIfChanged(0);
+        assertNotNull(first);
+        assertEquals(1, first.getBid().getId());
+        assertNull(auction.getLatestBidIfChanged(first.getVersion()));
+
+        auction.propose(new Bid(2, 2, 5)); // lost
+        assertNull(auction.getLatestBidIfChanged(first.getVersion()));
+
+        auction.propose(new Bid(3, 3, 20));
+        BidSnapshot second = auction.getLatestBidIfChanged(first.getVersion());
+        assertEquals(3, second.getBid().getId());
+        assertTrue(second.getVersion() > first.getVersion());
+    }
+}
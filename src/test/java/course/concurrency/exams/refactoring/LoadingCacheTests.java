@@ -0,0 +1,222 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadingCacheTests {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private Others.LoadingCache<String, String> cache;
+
+    // value is the key and the number of the load
+    @BeforeEach
+    public void setup() {
+        cache = new Others.LoadingCache<>();
+        cache.setClock(nanos::get);
+        cache.setLoader(key -> key + loads.incrementAndGet());
+    }
+
+    @Test
+    public void testLoadsOnce() {
+        assertEquals("a1", cache.get("a"));
+        assertEquals("a1", cache.get("a"));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio());
+    }
+
+    @Test
+    public void testCoalescesConcurrentLoads() throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        cache.setLoader(key -> {
+            loads.incrementAndGet();
+            try {
+                loading.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return key;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> values = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            values.add(executor.submit(() -> cache.get("a")));
+        }
+        Thread.sleep(100);
+        loading.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(1, loads.get());
+        values.forEach(value -> assertEquals("a", join(value)));
+    }
+
+    @Test
+    public void testLoadDoesNotBlockOtherKeys() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        cache.setLoader(key -> {
+            if (key.equals("Aa")) {
+                loading.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return key;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<String> slow = executor.submit(() -> cache.get("Aa"));
+        assertTrue(loading.await(1, TimeUnit.SECONDS));
+
+        Future<String> other = executor.submit(() -> cache.get("BB")); // same hash code
+        assertEquals("BB", other.get(1, TimeUnit.SECONDS));
+
+        released.countDown();
+        assertEquals("Aa", slow.get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testExpiresAfterWrite() {
+        cache.setExpireAfterWrite(10);
+        cache.get("a");
+        advanceMillis(9);
+        assertEquals("a1", cache.get("a"));
+
+        advanceMillis(1);
+        assertEquals("a2", cache.get("a"));
+        assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void testExpiresAfterAccess() {
+        cache.setExpireAfterAccess(10);
+        cache.get("a");
+        for (int i = 0; i < 5; i++) {
+            advanceMillis(9);
+            assertEquals("a1", cache.get("a")); // every read extends it
+        }
+        advanceMillis(10);
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testCleanUpRemovesExpiredOnly() {
+        cache.setExpireAfterAccess(10);
+        cache.get("old");
+        advanceMillis(5);
+        cache.get("new");
+        advanceMillis(5);
+
+        cache.cleanUp();
+
+        assertEquals(1, cache.size());
+        assertNull(cache.getIfPresent("old"));
+        assertEquals("new2", cache.getIfPresent("new"));
+    }
+
+    @Test
+    public void testKeepsFrequentKeysDuringScan() {
+        cache.setMaximumSize(10);
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot" + i);
+            cache.get("hot" + i); // moved to the protected segment
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.get("scan" + i);
+        }
+
+        assertEquals(10, cache.size());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.getIfPresent("hot" + i));
+        }
+        assertEquals(95, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testRefreshesAhead() {
+        List<String> removed = new ArrayList<>();
+        cache.setRefreshExecutor(Runnable::run);
+        cache.setRefreshAfterWrite(10);
+        cache.setExpireAfterWrite(20);
+        cache.setRemovalListener((key, value) -> removed.add(value));
+        cache.get("a");
+
+        advanceMillis(15);
+        assertEquals("a1", cache.get("a")); // stale, reloaded meanwhile
+        assertEquals("a2", cache.get("a"));
+        advanceMillis(5);
+        assertEquals("a2", cache.get("a")); // the first value would have expired by now
+
+        assertEquals(1, cache.getRefreshCount());
+        assertEquals(List.of("a1"), removed);
+    }
+
+    @Test
+    public void testReleasesValueRefreshedAfterRemoval() {
+        List<Runnable> refreshes = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        cache.setRefreshExecutor(refreshes::add);
+        cache.setRefreshAfterWrite(10);
+        cache.setRemovalListener((key, value) -> removed.add(value));
+        cache.get("a");
+        advanceMillis(15);
+        cache.get("a"); // schedules the refresh
+
+        cache.invalidate("a");
+        refreshes.forEach(Runnable::run);
+
+        assertEquals(List.of("a1", "a2"), removed); // nothing is in the cache, both are released once
+        assertEquals(0, cache.getRefreshCount());
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testInvalidatesAll() {
+        List<String> removed = new ArrayList<>();
+        cache.setRemovalListener((key, value) -> removed.add(value));
+        cache.get("a");
+        cache.add("b", "b");
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertEquals(2, removed.size());
+    }
+
+    @Test
+    public void testLoadFailureIsThrown() {
+        cache.setLoader(key -> {
+            throw new IllegalStateException("Router is down");
+        });
+
+        assertThrows(IllegalStateException.class, () -> cache.get("a"));
+        assertEquals(1, cache.getLoadFailureCount());
+        assertEquals(0, cache.size());
+    }
+
+    private void advanceMillis(long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static String join(Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MountTableDeltaTests {
+
+    private final List<String> logs = new CopyOnWriteArrayList<>();
+    private final Map<String, List<Others.MountTableDelta>> pushed = new ConcurrentHashMap<>();
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+
+    private MountTableRefresherService service;
+    private Others.MountTable mountTable;
+    private List<Others.RouterState> routers;
+
+    @BeforeEach
+    public void setup() {
+        service = new MountTableRefresherService() {
+            @Override
+            public void log(String message) {
+                logs.add(message);
+            }
+        };
+        service.setCacheUpdateTimeout(1000);
+        service.setRouterClientsCache(new Others.LoadingCache<>());
+        routers = IntStream.range(0, 3)
+                .mapToObj(i -> new Others.RouterState("router-"))
+                .collect(Collectors.toList());
+        service.setRouterStore(new Others.RouterStore() {
+            @Override
+            public List<Others.RouterState> getCachedRecords() {
+                return routers;
+            }
+        });
+        service.setManagerFactory(address -> new Others.MountTableManager(address) {
+            @Override
+            public boolean refresh() {
+                return refresh(null);
+            }
+
+            @Override
+            public boolean refresh(Others.MountTableDelta delta) {
+                pushed.computeIfAbsent(address, a -> new CopyOnWriteArrayList<>()).add(delta);
+                return !failing.contains(address);
+            }
+        });
+        mountTable = new Others.MountTable(2);
+        mountTable.put("/data", "ns1");
+        mountTable.put("/user", "ns2");
+    }
+
+    @Test
+    public void testPushesFullTableToUnknownRouters() {
+        service.setMountTable(mountTable);
+
+        service.refresh();
+
+        assertEquals(3, pushed.size());
+        Others.MountTableDelta delta = pushed.get(address(0)).get(0);
+        assertTrue(delta.isFull());
+        assertEquals(2, delta.getChanges().size());
+        assertEquals(2, delta.getToVersion());
+        routers.forEach(router -> assertEquals(2, router.getMountTableVersion()));
+    }
+
+    @Test
+    public void testSkipsUpToDateRouters() {
+        service.setMountTable(mountTable);
+        service.refresh();
+        pushed.clear();
+
+        service.refresh();
+
+        assertTrue(pushed.isEmpty());
+        assertTrue(logs.contains("Mount table version=2 pushed to 0 of 3 routers, deltaBytes=0"), logs.toString());
+    }
+
+    @Test
+    public void testPushesOnlyChanges() {
+        service.setMountTable(mountTable);
+        service.refresh();
+        pushed.clear();
+
+        mountTable.remove("/user");
+        service.refresh();
+
+        Others.MountTableDelta delta = pushed.get(address(1)).get(0);
+        assertFalse(delta.isFull());
+        assertEquals(2, delta.getFromVersion());
+        assertEquals(1, delta.getChanges().size());
+        assertTrue(delta.getChanges().get(0).isRemoval());
+        assertEquals("/user".length(), delta.getSizeBytes());
+    }
+
+    @Test
+    public void testRetriesFailedRouter() {
+        service.setMountTable(mountTable);
+        failing.add(address(2));
+        service.refresh();
+        failing.clear();
+        pushed.clear();
+
+        service.refresh();
+
+        assertEquals(Set.of(address(2)), pushed.keySet());
+        assertEquals(2, routers.get(2).getMountTableVersion());
+    }
+
+    @Test
+    public void testPushesFullTableBehindTheLog() {
+        service.setMountTable(mountTable);
+        service.refresh();
+        pushed.clear();
+
+        mountTable.put("/tmp", "ns3");
+        mountTable.put("/logs", "ns4");
+        mountTable.put("/apps", "ns5"); // the first of three changes is out of the log
+
+        service.refresh();
+
+        Others.MountTableDelta delta = pushed.get(address(0)).get(0);
+        assertTrue(delta.isFull());
+        assertEquals(5, delta.getChanges().size());
+    }
+
+    @Test
+    public void testRefreshesAllWithoutMountTable() {
+        service.refresh();
+        service.refresh();
+
+        routers.forEach(router -> assertEquals(2, pushed.get(router.getAdminAddress()).size()));
+        assertNull(pushed.get(address(0)).get(0));
+    }
+
+    private String address(int router) {
+        return routers.get(router).getAdminAddress();
+    }
+}
@@ -22,9 +22,10 @@ public class MountTableRefresherServiceTests {
 
     private Others.RouterStore routerStore;
     private Others.MountTableManager manager;
-    private Others.LoadingCache routerClientsCache;
+    private Others.LoadingCache<String, Others.RouterClient> routerClientsCache;
 
     @BeforeEach
+    @SuppressWarnings("unchecked") // mock of the generic cache
     public void setUpStreams() {
         service = new MountTableRefresherService();
         service.setCacheUpdateTimeout(CACHE_UPDATE_TIMEOUT);
@@ -0,0 +1,160 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefreshAsyncTests {
+
+    private static final int CACHE_UPDATE_TIMEOUT = 200;
+
+    private final List<String> logs = new CopyOnWriteArrayList<>();
+    private final Map<String, BooleanSupplier> refreshes = new ConcurrentHashMap<>();
+    private final AtomicInteger interrupted = new AtomicInteger();
+
+    private MountTableRefresherService service;
+    private List<String> addresses;
+
+    @BeforeEach
+    public void setup() {
+        service = new MountTableRefresherService() {
+            @Override
+            public void log(String message) {
+                logs.add(message);
+            }
+        };
+        service.setCacheUpdateTimeout(CACHE_UPDATE_TIMEOUT);
+        service.setRouterClientsCache(new Others.LoadingCache<>());
+        List<Others.RouterState> routers = IntStream.range(0, 3)
+                .mapToObj(i -> new Others.RouterState("router-"))
+                .collect(Collectors.toList());
+        service.setRouterStore(new Others.RouterStore() {
+            @Override
+            public List<Others.RouterState> getCachedRecords() {
+                return routers;
+            }
+        });
+        addresses = routers.stream().map(Others.RouterState::getAdminAddress).collect(Collectors.toList());
+        service.setManagerFactory(address -> new Others.MountTableManager(address) {
+            @Override
+            public boolean refresh() {
+                return refreshes.getOrDefault(address, () -> true).getAsBoolean();
+            }
+        });
+    }
+
+    @Test
+    public void testDoesNotBlockCaller() {
+        CountDownLatch release = new CountDownLatch(1);
+        addresses.forEach(address -> refreshes.put(address, () -> await(release)));
+
+        CompletableFuture<RefreshReport> report = service.refreshAsync();
+
+        assertFalse(report.isDone());
+        release.countDown();
+        assertEquals(3, report.join().getSuccessCount());
+        assertTrue(logs.contains("Mount table entries cache refresh successCount=3,failureCount=0"), logs.toString());
+    }
+
+    @Test
+    public void testReportsEveryRouter() {
+        refreshes.put(addresses.get(0), () -> sleep(20));
+        refreshes.put(addresses.get(1), () -> false);
+        refreshes.put(addresses.get(2), () -> sleep(CACHE_UPDATE_TIMEOUT * 5));
+
+        RefreshReport report = service.refreshAsync().join();
+
+        List<RefreshReport.Status> statuses = report.getResults().stream()
+                .map(RefreshReport.RouterResult::getStatus)
+                .collect(Collectors.toList());
+        assertEquals(List.of(RefreshReport.Status.SUCCEEDED, RefreshReport.Status.FAILED,
+                RefreshReport.Status.EXPIRED), statuses);
+        assertEquals(1, report.getSuccessCount());
+        assertEquals(2, report.getFailureCount());
+        assertEquals(1, report.getExpiredCount());
+        assertTrue(report.getResult(addresses.get(0)).getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(report.getResult(addresses.get(2)).getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(CACHE_UPDATE_TIMEOUT));
+        assertTrue(report.getDurationNanos() >= report.getResult(addresses.get(2)).getLatencyNanos());
+        assertNull(report.getResult("unknown"));
+    }
+
+    @Test
+    public void testReportsRejectedRouterAsNotStarted() {
+        service.setRefreshParallelism(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        refreshes.put(addresses.get(0), () -> await(release));
+
+        CompletableFuture<RefreshReport> report = service.refreshAsync();
+        release.countDown();
+
+        RefreshReport.RouterResult rejected = report.join().getResult(addresses.get(2));
+        assertEquals(RefreshReport.Status.FAILED, rejected.getStatus());
+        assertEquals(0, rejected.getLatencyNanos());
+    }
+
+    @Test
+    public void testCancelStopsRunningRefreshes() {
+        addresses.forEach(address -> refreshes.put(address, () -> sleep(CACHE_UPDATE_TIMEOUT * 5)));
+
+        CompletableFuture<RefreshReport> report = service.refreshAsync();
+        sleep(20);
+        report.cancel(false);
+
+        long deadline = System.currentTimeMillis() + CACHE_UPDATE_TIMEOUT;
+        while (interrupted.get() < 3) {
+            assertTrue(System.currentTimeMillis() < deadline, "Refresh tasks are not interrupted");
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    public void testFinishesQueuedRefreshesAfterStop() throws Exception {
+        service.serviceInit();
+        service.setCacheUpdateTimeout(CACHE_UPDATE_TIMEOUT);
+        service.setRefreshParallelism(1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        refreshes.put(addresses.get(0), () -> {
+            started.countDown();
+            return await(release);
+        });
+
+        CompletableFuture<RefreshReport> report = service.refreshAsync();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        service.serviceStop(); // the other two routers are still queued
+        release.countDown();
+
+        assertEquals(3, report.get(1, TimeUnit.SECONDS).getSuccessCount());
+    }
+
+    private boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            interrupted.incrementAndGet();
+            throw new IllegalStateException(e);
+        }
+    }
+}
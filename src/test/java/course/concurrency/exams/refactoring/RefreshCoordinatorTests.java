@@ -0,0 +1,122 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefreshCoordinatorTests {
+
+    private static final int ROUTERS = 3;
+
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    private MountTableRefresherService service;
+    private RefreshCoordinator coordinator;
+
+    @BeforeEach
+    public void setup() {
+        service = new MountTableRefresherService() {
+            @Override
+            public void log(String message) {
+            }
+        };
+        service.setCacheUpdateTimeout(1000);
+        service.setRouterClientsCache(new Others.LoadingCache<>());
+        List<Others.RouterState> routers = IntStream.range(0, ROUTERS)
+                .mapToObj(i -> new Others.RouterState("router-"))
+                .collect(Collectors.toList());
+        service.setRouterStore(new Others.RouterStore() {
+            @Override
+            public List<Others.RouterState> getCachedRecords() {
+                return routers;
+            }
+        });
+        service.setManagerFactory(address -> new Others.MountTableManager(address) {
+            @Override
+            public boolean refresh() {
+                refreshes.incrementAndGet();
+                try {
+                    return release.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        coordinator = new RefreshCoordinator(service);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    public void testMergesBurstIntoOneCycle() {
+        coordinator.setDebounceMillis(100);
+        List<CompletableFuture<RefreshReport>> reports = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            reports.add(coordinator.requestRefresh());
+        }
+
+        RefreshReport report = reports.get(0).join();
+
+        reports.forEach(other -> assertSame(report, other.join()));
+        assertEquals(ROUTERS, report.getSuccessCount());
+        assertEquals(ROUTERS, refreshes.get());
+        assertEquals(1, coordinator.getCycleCount());
+        assertEquals(9, coordinator.getCoalescedCount());
+        assertEquals(10, coordinator.getAnsweredCount());
+        assertTrue(coordinator.getMeanLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(coordinator.getMaxLatencyNanos() >= coordinator.getMeanLatencyNanos());
+    }
+
+    @Test
+    public void testRequestDuringCycleWaitsForNextOne() throws InterruptedException {
+        release = new CountDownLatch(1);
+        CompletableFuture<RefreshReport> first = coordinator.requestRefresh();
+        awaitRefreshes(ROUTERS);
+
+        CompletableFuture<RefreshReport> second = coordinator.requestRefresh();
+        CompletableFuture<RefreshReport> third = coordinator.requestRefresh();
+        Thread.sleep(50);
+        assertEquals(ROUTERS, refreshes.get()); // not started while the first one runs
+        release.countDown();
+
+        assertNotSame(first.join(), second.join());
+        assertSame(second.join(), third.join());
+        assertEquals(2 * ROUTERS, refreshes.get());
+        assertEquals(2, coordinator.getCycleCount());
+        assertEquals(1, coordinator.getCoalescedCount());
+    }
+
+    @Test
+    public void testRejectsRequestsAfterShutdown() {
+        coordinator.shutdown();
+
+        CompletionException e = assertThrows(CompletionException.class, () -> coordinator.requestRefresh().join());
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        assertEquals(0, refreshes.get());
+    }
+
+    private void awaitRefreshes(int expected) {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (refreshes.get() < expected) {
+            assertTrue(System.currentTimeMillis() < deadline, "Refresh has not started");
+            Thread.onSpinWait();
+        }
+    }
+}
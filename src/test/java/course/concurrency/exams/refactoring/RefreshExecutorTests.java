@@ -0,0 +1,176 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefreshExecutorTests {
+
+    private static final int CACHE_UPDATE_TIMEOUT = 200;
+
+    private final List<String> logs = new CopyOnWriteArrayList<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger interrupted = new AtomicInteger();
+    private volatile BooleanSupplier refresh = () -> true;
+
+    private MountTableRefresherService service;
+    private Others.LoadingCache<String, Others.RouterClient> routerClientsCache;
+
+    @BeforeEach
+    public void setup() {
+        service = new MountTableRefresherService() {
+            @Override
+            public void log(String message) {
+                logs.add(message);
+            }
+        };
+        service.setCacheUpdateTimeout(CACHE_UPDATE_TIMEOUT);
+        routerClientsCache = new Others.LoadingCache<>();
+        service.setRouterClientsCache(routerClientsCache);
+        service.setManagerFactory(address -> new Others.MountTableManager(address) {
+            @Override
+            public boolean refresh() {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    return refresh.getAsBoolean();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testReadsClientOfEveryRouter() {
+        setRouters(3);
+        AtomicInteger clients = new AtomicInteger();
+        routerClientsCache.setLoader(address -> {
+            clients.incrementAndGet();
+            return new Others.RouterClient();
+        });
+
+        service.refresh();
+        service.refresh();
+
+        assertEquals(3, clients.get()); // created once and kept fresh
+        assertEquals(3, routerClientsCache.getHitCount());
+    }
+
+    @Test
+    public void testLimitsParallelism() {
+        setRouters(20);
+        service.setRefreshParallelism(4, 100);
+        refresh = () -> sleep(20);
+
+        service.refresh();
+
+        assertEquals(4, maxRunning.get());
+        assertTrue(logs.contains("Mount table entries cache refresh successCount=20,failureCount=0"), logs.toString());
+    }
+
+    @Test
+    public void testCancelsTimedOutRefresh() {
+        List<String> addresses = setRouters(1);
+        routerClientsCache.add(addresses.get(0), new Others.RouterClient());
+        refresh = () -> sleep(CACHE_UPDATE_TIMEOUT * 5);
+
+        long start = System.currentTimeMillis();
+        service.refresh();
+        long end = System.currentTimeMillis();
+
+        assertTrue(end - start < CACHE_UPDATE_TIMEOUT * 3, "Execution time: " + (end - start));
+        awaitInterrupted(1);
+        assertTrue(logs.contains("Not all router admins updated their cache"), logs.toString());
+        assertTrue(logs.contains("Mount table entries cache refresh successCount=0,failureCount=1"), logs.toString());
+        assertNull(routerClientsCache.getIfPresent(addresses.get(0)));
+    }
+
+    @Test
+    public void testTimeoutStartsWhenQueuedTaskStarts() {
+        setRouters(4);
+        service.setRefreshParallelism(1, 100);
+        refresh = () -> sleep(CACHE_UPDATE_TIMEOUT / 2);
+
+        service.refresh(); // four times the timeout in total, each in time
+
+        assertTrue(logs.contains("Mount table entries cache refresh successCount=4,failureCount=0"), logs.toString());
+    }
+
+    @Test
+    public void testFailsTasksOverQueueCapacity() {
+        setRouters(4);
+        service.setRefreshParallelism(1, 1);
+        refresh = () -> sleep(20);
+
+        service.refresh();
+
+        assertTrue(logs.contains("Mount table entries cache refresh successCount=2,failureCount=2"), logs.toString());
+    }
+
+    @Test
+    public void testSurvivesInterrupt() throws InterruptedException {
+        setRouters(4);
+        CountDownLatch started = new CountDownLatch(4);
+        refresh = () -> {
+            started.countDown();
+            return sleep(CACHE_UPDATE_TIMEOUT * 5);
+        };
+
+        Thread thread = new Thread(() -> service.refresh());
+        thread.start();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        thread.interrupt();
+        thread.join(1000);
+
+        awaitInterrupted(4);
+        assertTrue(logs.contains("Mount table cache refresher was interrupted."), logs.toString());
+        assertTrue(logs.contains("Mount table entries cache refresh successCount=0,failureCount=4"), logs.toString());
+
+        logs.clear();
+        refresh = () -> true;
+        service.refresh();
+        assertTrue(logs.contains("Mount table entries cache refresh successCount=4,failureCount=0"), logs.toString());
+    }
+
+    private List<String> setRouters(int count) {
+        List<Others.RouterState> routers = IntStream.range(0, count)
+                .mapToObj(i -> new Others.RouterState("router-"))
+                .collect(Collectors.toList());
+        service.setRouterStore(new Others.RouterStore() {
+            @Override
+            public List<Others.RouterState> getCachedRecords() {
+                return routers;
+            }
+        });
+        return routers.stream().map(Others.RouterState::getAdminAddress).collect(Collectors.toList());
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            interrupted.incrementAndGet();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void awaitInterrupted(int expected) {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (interrupted.get() < expected) {
+            assertTrue(System.currentTimeMillis() < deadline, "Refresh tasks are not interrupted");
+            Thread.onSpinWait();
+        }
+    }
+}
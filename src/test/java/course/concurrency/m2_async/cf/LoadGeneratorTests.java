@@ -0,0 +1,17 @@
+package course.concurrency.m2_async.cf;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LoadGeneratorTests {
+
+    @Test
+    public void testModesComputeTheSame() {
+        int expected = LoadGenerator.compute(LoadGenerator.Mode.BOXED);
+
+        assertEquals(49_999_998, expected);
+        assertEquals(expected, LoadGenerator.compute(LoadGenerator.Mode.PRIMITIVE));
+        assertEquals(expected, LoadGenerator.compute(LoadGenerator.Mode.PARALLEL));
+    }
+}
@@ -0,0 +1,109 @@
+package course.concurrency.m2_async.cf;
+
+import course.concurrency.m2_async.cf.report.ReportGraph;
+import course.concurrency.m2_async.cf.report.ReportRun;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportGraphTests {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ReportGraph graph = new ReportGraph();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testComputesSharedStageOnce() {
+        AtomicInteger sourceRuns = new AtomicInteger();
+        ReportGraph.Stage<Integer> source = graph.stage("source", () -> sourceRuns.incrementAndGet() * 10);
+        ReportGraph.Stage<Integer> left = graph.stage("left", source, s -> s + 1);
+        ReportGraph.Stage<Integer> right = graph.stage("right", source, s -> s + 2);
+        ReportGraph.Stage<Integer> report = graph.stage("report", left, right, Integer::sum);
+
+        assertEquals(23, graph.run(report, executor).join());
+        assertEquals(1, sourceRuns.get());
+    }
+
+    @Test
+    public void testRunsIndependentStagesInParallel() {
+        ReportGraph.Stage<Integer> first = graph.stage("first", () -> sleep(200, 1));
+        ReportGraph.Stage<Integer> second = graph.stage("second", () -> sleep(200, 2));
+        ReportGraph.Stage<Integer> third = graph.stage("third", () -> sleep(200, 3));
+        ReportGraph.Stage<Integer> report = graph.stage("report", List.of(first, second, third),
+                results -> results.get(first) + results.get(second) + results.get(third));
+
+        long start = System.currentTimeMillis();
+        ReportRun<Integer> run = graph.run(report, executor);
+        assertEquals(6, run.join());
+        long end = System.currentTimeMillis();
+
+        assertTrue(end - start < 400, "Execution time: " + (end - start));
+        assertEquals(4, run.getTimings().size());
+    }
+
+    @Test
+    public void testReportsCriticalPath() {
+        ReportGraph.Stage<Integer> fast = graph.stage("fast", () -> sleep(10, 1));
+        ReportGraph.Stage<Integer> slow = graph.stage("slow", () -> sleep(200, 2));
+        ReportGraph.Stage<Integer> middle = graph.stage("middle", fast, f -> sleep(10, f));
+        ReportGraph.Stage<Integer> report = graph.stage("report", middle, slow, Integer::sum);
+        graph.stage("unused", report, r -> fail("Stage is not required"));
+
+        ReportRun<Integer> run = graph.run(report, executor);
+        assertEquals(3, run.join());
+
+        List<String> path = run.getCriticalPath().stream()
+                .map(ReportRun.StageTiming::getStage)
+                .collect(Collectors.toList());
+        assertEquals(List.of("slow", "report"), path);
+        assertTrue(run.getCriticalPathNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(run.getElapsedNanos() >= run.getCriticalPathNanos());
+    }
+
+    @Test
+    public void testFailedStageFailsDependents() {
+        AtomicInteger dependentRuns = new AtomicInteger();
+        ReportGraph.Stage<Integer> broken = graph.stage("broken", () -> {
+            throw new IllegalStateException("Source is down");
+        });
+        ReportGraph.Stage<Integer> report = graph.stage("report", broken, b -> dependentRuns.incrementAndGet());
+
+        ReportRun<Integer> run = graph.run(report, executor);
+        CompletionException e = assertThrows(CompletionException.class, run::join);
+
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(0, dependentRuns.get());
+        assertTrue(run.getTimings().get(0).isFailed());
+        assertThrows(IllegalStateException.class, run::getCriticalPath);
+    }
+
+    @Test
+    public void testRejectsStageOfAnotherGraph() {
+        ReportGraph.Stage<Integer> foreign = new ReportGraph().stage("foreign", () -> 1);
+
+        assertThrows(IllegalArgumentException.class, () -> graph.stage("report", foreign, f -> f));
+        assertThrows(IllegalArgumentException.class, () -> graph.run(foreign, executor));
+    }
+
+    private static int sleep(long millis, int value) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return value;
+    }
+}
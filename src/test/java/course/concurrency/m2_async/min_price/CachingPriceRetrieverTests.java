@@ -0,0 +1,173 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.CachingPriceRetriever;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingPriceRetrieverTests {
+
+    private final ExecutorService loader = Executors.newCachedThreadPool();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile boolean failing = false;
+
+    // price is the number of the call
+    private final PriceRetriever delegate = new PriceRetriever() {
+        @Override
+        public double getPrice(long itemId, long shopId) {
+            int call = calls.incrementAndGet();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            if (failing) {
+                throw new IllegalStateException("Shop is down");
+            }
+            return call;
+        }
+    };
+
+    @AfterEach
+    public void tearDown() {
+        released.countDown();
+        loader.shutdownNow();
+    }
+
+    @Test
+    public void testCoalescesConcurrentRequests() throws Exception {
+        CachingPriceRetriever cache = new CachingPriceRetriever(delegate, loader, 10_000, 100);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+
+        List<Future<Double>> prices = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            prices.add(callers.submit(() -> cache.getPrice(1, 2)));
+        }
+        while (cache.getHitCount() + cache.getCoalescedCount() + cache.getLoadCount() < 8) {
+            Thread.sleep(1);
+        }
+        released.countDown();
+        for (Future<Double> price : prices) {
+            assertEquals(1, price.get(1, TimeUnit.SECONDS));
+        }
+        callers.shutdown();
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(7, cache.getCoalescedCount());
+        assertEquals(7.0 / 8, cache.getHitRatio());
+    }
+
+    @Test
+    public void testExpiresAfterTtl() throws InterruptedException {
+        released.countDown();
+        CachingPriceRetriever cache = new CachingPriceRetriever(delegate, loader, 50, 100);
+
+        assertEquals(1, cache.getPrice(1, 1));
+        assertEquals(1, cache.getPrice(1, 1));
+        assertEquals(2, cache.getPrice(1, 2)); // another shop
+        Thread.sleep(100);
+        assertEquals(3, cache.getPrice(1, 1));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getLoadCount());
+    }
+
+    @Test
+    public void testEvictsOldestOverMaxSize() {
+        released.countDown();
+        CachingPriceRetriever cache = new CachingPriceRetriever(delegate, loader, 10_000, 3);
+
+        for (long item = 1; item <= 5; item++) {
+            cache.getPrice(item, 1);
+        }
+
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(5, cache.getPrice(5, 1));
+        assertEquals(6, cache.getPrice(1, 1)); // evicted
+    }
+
+    @Test
+    public void testDoesNotCacheFailures() {
+        released.countDown();
+        failing = true;
+        CachingPriceRetriever cache = new CachingPriceRetriever(delegate, loader, 10_000, 100);
+
+        assertThrows(IllegalStateException.class, () -> cache.getPrice(1, 1));
+        failing = false;
+        assertEquals(2, cache.getPrice(1, 1));
+        assertEquals(1, cache.getFailedLoadCount());
+    }
+
+    @Test
+    public void testFailsLoadsRejectedByLoader() {
+        released.countDown();
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        CachingPriceRetriever cache = new CachingPriceRetriever(delegate, stopped, 10_000, 100);
+
+        assertThrows(RejectedExecutionException.class, () -> cache.getPrice(1, 1));
+        assertThrows(RejectedExecutionException.class, () -> cache.getPrices(List.of(1L, 2L), 1));
+
+        assertEquals(0, cache.size()); // nothing left to wait for
+        assertEquals(3, cache.getFailedLoadCount());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testEvictionQueueStaysBoundedForReloadedKey() throws InterruptedException {
+        released.countDown();
+        CachingPriceRetriever cache = new CachingPriceRetriever(delegate, loader, 1, 10);
+
+        for (int i = 0; i < 50; i++) {
+            cache.getPrice(1, 1);
+            Thread.sleep(2); // expired, the next request replaces the entry
+        }
+        failing = true;
+        for (int i = 0; i < 1000; i++) {
+            assertThrows(IllegalStateException.class, () -> cache.getPrice(2, 1)); // removed on every failure
+        }
+
+        assertEquals(1050, cache.getLoadCount());
+        assertTrue(cache.size() <= 1);
+        assertTrue(cache.getEvictionQueueSize() <= 20, "Queue size: " + cache.getEvictionQueueSize());
+    }
+
+    @Test
+    public void testLoadsMissingPricesInOneBatch() {
+        List<Collection<Long>> batches = new CopyOnWriteArrayList<>();
+        PriceRetriever batching = new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                throw new AssertionError("Asked for a single item");
+            }
+
+            // no price of item 4
+            @Override
+            public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+                batches.add(List.copyOf(itemIds));
+                Map<Long, Double> prices = new HashMap<>();
+                itemIds.stream().filter(itemId -> itemId != 4).forEach(itemId -> prices.put(itemId, itemId * 10.0));
+                return prices;
+            }
+        };
+        CachingPriceRetriever cache = new CachingPriceRetriever(batching, loader, 10_000, 100);
+
+        assertEquals(Map.of(1L, 10.0, 2L, 20.0), cache.getPrices(List.of(1L, 2L), 1));
+        assertEquals(Map.of(1L, 10.0, 3L, 30.0), cache.getPrices(List.of(1L, 3L, 4L), 1));
+
+        assertEquals(2, batches.size());
+        assertEquals(Set.of(3L, 4L), Set.copyOf(batches.get(1)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getFailedLoadCount());
+        assertEquals(3, cache.size());
+    }
+}
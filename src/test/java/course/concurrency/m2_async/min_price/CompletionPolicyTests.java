@@ -0,0 +1,103 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.CompletionPolicy;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompletionPolicyTests {
+
+    // shop id is the delay of its response in milliseconds, price is the shop id
+    private static final List<Long> SHOPS = List.of(500L, 10L, 20L, 30L, 400L);
+
+    private PriceAggregator priceAggregator;
+    private CountDownLatch interrupted;
+
+    @BeforeEach
+    public void setup() {
+        interrupted = new CountDownLatch(2);
+        priceAggregator = new PriceAggregator();
+        priceAggregator.setShops(SHOPS);
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                try {
+                    Thread.sleep(shopId);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new IllegalStateException(e);
+                }
+                return shopId;
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("All shops by default")
+    public void shouldWaitForAll() {
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(1);
+        long end = System.currentTimeMillis();
+
+        assertEquals(10, min);
+        assertTrue(end - start >= 500, "Execution time: " + (end - start));
+    }
+
+    @Test
+    @DisplayName("First responses and cancel the rest")
+    public void shouldReturnAfterFirstResponses() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(1, CompletionPolicy.firstResponses(3));
+        long end = System.currentTimeMillis();
+
+        assertEquals(10, min);
+        assertTrue(end - start < 400, "Execution time: " + (end - start));
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "Slow shops are not cancelled");
+    }
+
+    @Test
+    @DisplayName("Fraction of shops")
+    public void shouldReturnAfterFractionOfShops() {
+        priceAggregator.setCompletionPolicy(CompletionPolicy.fractionOfShops(0.5));
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(1);
+        long end = System.currentTimeMillis();
+
+        assertEquals(10, min); // 3 of 5 shops
+        assertTrue(end - start < 400, "Execution time: " + (end - start));
+    }
+
+    @Test
+    @DisplayName("Current minimum after soft deadline")
+    public void shouldReturnCurrentMinAfterSoftDeadline() {
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(1, CompletionPolicy.softDeadline(100));
+        long end = System.currentTimeMillis();
+
+        assertEquals(10, min);
+        assertTrue(end - start >= 100 && end - start < 400, "Execution time: " + (end - start));
+    }
+
+    @Test
+    @DisplayName("First response after soft deadline when nobody responded before")
+    public void shouldWaitForFirstResponseAfterSoftDeadline() {
+        priceAggregator.setShops(List.of(300L, 200L));
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(1, CompletionPolicy.softDeadline(50));
+        long end = System.currentTimeMillis();
+
+        assertEquals(200, min);
+        assertTrue(end - start >= 200 && end - start < 300, "Execution time: " + (end - start));
+    }
+}
@@ -0,0 +1,106 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.ExecutionStrategy;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionStrategyTests {
+
+    private static final List<Long> SHOPS = List.of(100L, 100L, 100L, 100L);
+
+    private PriceAggregator priceAggregator;
+    private CountDownLatch started;
+    private CountDownLatch interrupted;
+
+    @BeforeEach
+    public void setup() {
+        started = new CountDownLatch(SHOPS.size());
+        interrupted = new CountDownLatch(SHOPS.size());
+        priceAggregator = new PriceAggregator();
+        priceAggregator.setShops(SHOPS);
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                started.countDown();
+                try {
+                    Thread.sleep(shopId);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new IllegalStateException(e);
+                }
+                return shopId;
+            }
+        });
+    }
+
+    @Test
+    public void testFixedThreadPoolLimitsConcurrency() {
+        priceAggregator.setExecutionStrategy(ExecutionStrategy.fixedThreadPool(2));
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(1);
+        long end = System.currentTimeMillis();
+
+        assertEquals(100, min);
+        assertTrue(end - start >= 200, "Execution time: " + (end - start));
+    }
+
+    @Test
+    public void testVirtualThreadsFallBackOnOlderRuntime() {
+        ExecutionStrategy strategy = ExecutionStrategy.virtualThreads();
+        priceAggregator.setExecutionStrategy(strategy);
+
+        assertEquals(ExecutionStrategy.isVirtualThreadsSupported(), strategy.toString().equals("virtualThreads"));
+        assertEquals(100, priceAggregator.getMinPrice(1));
+    }
+
+    @Test
+    public void testInterruptedCallerCancelsRequests() throws InterruptedException {
+        priceAggregator.setShops(List.of(2000L, 2000L, 2000L, 2000L));
+        double[] min = new double[1];
+        boolean[] stillInterrupted = new boolean[1];
+        Thread caller = new Thread(() -> {
+            min[0] = priceAggregator.getMinPrice(1);
+            stillInterrupted[0] = Thread.currentThread().isInterrupted();
+        });
+        caller.start();
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(1000);
+
+        assertFalse(caller.isAlive());
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "Requests outlived the caller");
+        assertEquals(Double.NaN, min[0]);
+        assertTrue(stillInterrupted[0]);
+    }
+
+    @Test
+    public void testSwapsStrategyUnderLoad() throws Exception {
+        priceAggregator.setShops(List.of(1L, 1L, 1L, 1L));
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        List<Future<Double>> prices = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            prices.add(callers.submit(() -> priceAggregator.getMinPrice(1)));
+        }
+        for (int i = 0; i < 50; i++) {
+            priceAggregator.setExecutionStrategy(i % 2 == 0
+                    ? ExecutionStrategy.fixedThreadPool(2)
+                    : ExecutionStrategy.cachedThreadPool());
+            Thread.sleep(1);
+        }
+
+        for (Future<Double> price : prices) {
+            assertEquals(1, price.get(5, TimeUnit.SECONDS));
+        }
+        callers.shutdown();
+    }
+}
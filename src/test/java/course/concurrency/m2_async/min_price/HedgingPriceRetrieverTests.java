@@ -0,0 +1,196 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.HedgingPriceRetriever;
+import course.concurrency.m2_async.cf.min_price.LatencyHistogram;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgingPriceRetrieverTests {
+
+    private static final int WARM_UP = 10;
+    private static final long FAST_MILLIS = 10;
+    private static final long SLOW_MILLIS = 1000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    // call after the warm up is slow, all others are fast; price is the number of the call
+    private final PriceRetriever delegate = new PriceRetriever() {
+        @Override
+        public double getPrice(long itemId, long shopId) {
+            int call = calls.incrementAndGet();
+            try {
+                Thread.sleep(call == WARM_UP + 1 ? SLOW_MILLIS : FAST_MILLIS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return call;
+        }
+    };
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testHedgesSlowRequest() {
+        HedgingPriceRetriever retriever = new HedgingPriceRetriever(delegate, executor, 95, 0.5, WARM_UP);
+        warmUp(retriever);
+
+        long start = System.currentTimeMillis();
+        double price = retriever.getPrice(1, 1);
+        long end = System.currentTimeMillis();
+
+        assertEquals(WARM_UP + 2, price); // answer of the hedged request
+        assertTrue(end - start < SLOW_MILLIS / 2, "Execution time: " + (end - start));
+        assertEquals(1, retriever.getHedgeCount());
+        assertEquals(1, retriever.getHedgeWinCount());
+    }
+
+    @Test
+    public void testDoesNotHedgeOverBudget() {
+        HedgingPriceRetriever retriever = new HedgingPriceRetriever(delegate, executor, 95, 0, WARM_UP);
+        warmUp(retriever);
+
+        assertEquals(WARM_UP + 1, retriever.getPrice(1, 1)); // waits for the slow one
+
+        assertEquals(0, retriever.getHedgeCount());
+        assertEquals(1, retriever.getOverBudgetCount());
+        assertEquals(0, retriever.getHedgeRate());
+    }
+
+    @Test
+    public void testRecordsLatencyOfLoser() {
+        HedgingPriceRetriever retriever = new HedgingPriceRetriever(delegate, executor, 95, 0.5, WARM_UP);
+        warmUp(retriever);
+
+        retriever.getPrice(1, 1);
+
+        LatencyHistogram latency = retriever.getLatencyMicros(1);
+        assertEquals(WARM_UP + 2, latency.getCount());
+        // the slow primary waited for the hedge delay and the hedged request at least
+        assertTrue(latency.getPercentile(100) >= 2 * FAST_MILLIS * 1000);
+    }
+
+    @Test
+    public void testUnfinishedRequestDoesNotLowerPercentile() throws InterruptedException {
+        HedgingPriceRetriever retriever = new HedgingPriceRetriever(delegate, executor, 95, 0.5, WARM_UP);
+        warmUp(retriever);
+
+        Thread caller = new Thread(() -> assertThrows(IllegalStateException.class, () -> retriever.getPrice(1, 1)));
+        caller.start();
+        Thread.sleep(1);
+        caller.interrupt(); // gives up long before the usual latency
+        caller.join(1000);
+
+        assertEquals(WARM_UP, retriever.getLatencyMicros(1).getCount());
+    }
+
+    @Test
+    public void testWaitsForPrimaryWhenHedgeRejected() {
+        AtomicInteger submits = new AtomicInteger();
+        ExecutorService rejectingHedges = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                1, TimeUnit.SECONDS, new SynchronousQueue<>()) {
+            @Override
+            public void execute(Runnable command) {
+                if (submits.incrementAndGet() > WARM_UP + 1) {
+                    throw new RejectedExecutionException("No thread for the hedge");
+                }
+                super.execute(command);
+            }
+        };
+        HedgingPriceRetriever retriever = new HedgingPriceRetriever(delegate, rejectingHedges, 95, 0.5, WARM_UP);
+        warmUp(retriever);
+
+        assertEquals(WARM_UP + 1, retriever.getPrice(1, 1)); // the slow primary
+        assertThrows(RejectedExecutionException.class, () -> retriever.getPrice(1, 1));
+
+        assertEquals(0, retriever.getHedgeCount());
+        rejectingHedges.shutdownNow();
+    }
+
+    @Test
+    public void testBudgetDoesNotAccumulate() {
+        PriceRetriever slowing = new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                int call = calls.incrementAndGet();
+                try {
+                    Thread.sleep(call > WARM_UP ? 10 * FAST_MILLIS : FAST_MILLIS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return call;
+            }
+        };
+        HedgingPriceRetriever retriever = new HedgingPriceRetriever(slowing, executor, 50, 0.5, WARM_UP);
+        retriever.setBudgetBurst(1);
+        warmUp(retriever); // earns five duplicates, keeps one
+
+        retriever.getPrice(1, 1);
+        retriever.getPrice(1, 1);
+
+        assertEquals(1, retriever.getHedgeCount());
+        assertEquals(1, retriever.getOverBudgetCount());
+    }
+
+    @Test
+    public void testTracksLatencyPerShop() {
+        HedgingPriceRetriever retriever = new HedgingPriceRetriever(delegate, executor, 95, 0.5, WARM_UP);
+        warmUp(retriever);
+
+        LatencyHistogram latency = retriever.getLatencyMicros(1);
+        assertEquals(WARM_UP, latency.getCount());
+        assertTrue(latency.getPercentile(50) >= FAST_MILLIS * 1000);
+        assertNull(retriever.getLatencyMicros(2));
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(5, histogram.getPercentile(0.5));
+        long p95 = histogram.getPercentile(95);
+        assertTrue(p95 >= 950 && p95 <= 950 * 1.125, "p95: " + p95);
+        assertEquals(0, new LatencyHistogram().getPercentile(99));
+    }
+
+    private void warmUp(HedgingPriceRetriever retriever) {
+        for (int i = 0; i < WARM_UP; i++) {
+            retriever.getPrice(1, 1);
+        }
+    }
+
+    @Test
+    public void testHedgesBatchRequestOfDelegate() {
+        AtomicInteger batches = new AtomicInteger();
+        PriceRetriever batching = new PriceRetriever() {
+            @Override
+            public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+                batches.incrementAndGet();
+                return Map.of(1L, 10.0, 2L, 20.0);
+            }
+        };
+        HedgingPriceRetriever retriever = new HedgingPriceRetriever(batching, executor, 95, 0.5, WARM_UP);
+
+        assertEquals(Map.of(1L, 10.0, 2L, 20.0), retriever.getPrices(List.of(1L, 2L), 1));
+
+        assertEquals(1, batches.get());
+        assertEquals(1, retriever.getBatchLatencyMicros(1).getCount());
+        assertNull(retriever.getLatencyMicros(1));
+    }
+}
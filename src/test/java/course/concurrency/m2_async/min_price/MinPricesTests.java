@@ -0,0 +1,191 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MinPricesTests {
+
+    private static final List<Long> SHOPS = List.of(1L, 2L, 3L);
+    private static final List<Long> ITEMS = List.of(10L, 20L, 30L);
+
+    private final AtomicInteger singleRequests = new AtomicInteger();
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private PriceAggregator priceAggregator;
+
+    @BeforeEach
+    public void setup() {
+        priceAggregator = new PriceAggregator();
+        priceAggregator.setShops(SHOPS);
+    }
+
+    @Test
+    public void testAsksEveryShopOnce() {
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                singleRequests.incrementAndGet();
+                return price(itemId, shopId);
+            }
+
+            // shop 3 does not sell item 30
+            @Override
+            public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+                batchRequests.incrementAndGet();
+                Map<Long, Double> prices = new HashMap<>();
+                for (Long itemId : itemIds) {
+                    if (shopId != 3 || itemId != 30) {
+                        prices.put(itemId, price(itemId, shopId));
+                    }
+                }
+                return prices;
+            }
+        });
+
+        Map<Long, Double> minPrices = priceAggregator.getMinPrices(ITEMS);
+
+        assertEquals(Map.of(10L, 7.0, 20L, 17.0, 30L, 28.0), minPrices);
+        assertEquals(SHOPS.size(), batchRequests.get());
+        assertEquals(0, singleRequests.get());
+    }
+
+    @Test
+    public void testFallsBackToSingleRequests() {
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                singleRequests.incrementAndGet();
+                return price(itemId, shopId);
+            }
+        });
+
+        Map<Long, Double> minPrices = priceAggregator.getMinPrices(ITEMS);
+
+        assertEquals(Map.of(10L, 7.0, 20L, 17.0, 30L, 27.0), minPrices);
+        assertEquals(SHOPS.size() * ITEMS.size(), singleRequests.get());
+    }
+
+    @Test
+    public void testAsksForItemsInParallel() {
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return price(itemId, shopId);
+            }
+        });
+        List<Long> items = List.of(10L, 20L, 30L, 40L, 50L, 60L);
+
+        long start = System.currentTimeMillis();
+        Map<Long, Double> minPrices = priceAggregator.getMinPrices(items);
+        long end = System.currentTimeMillis();
+
+        assertTrue(end - start < 2000, "Execution time: " + (end - start));
+        assertEquals(Map.of(10L, 7.0, 20L, 17.0, 30L, 27.0, 40L, 37.0, 50L, 47.0, 60L, 57.0), minPrices);
+    }
+
+    @Test
+    public void testBoundsItemsAskedAtOnce() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        PriceRetriever retriever = new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return price(itemId, shopId);
+            }
+        };
+        retriever.setItemParallelism(2);
+        List<Long> items = List.of(10L, 20L, 30L, 40L, 50L, 60L);
+
+        assertEquals(items.size(), retriever.getPrices(items, 1).size());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void testReturnsPartialPricesAtBatchTimeout() {
+        PriceRetriever retriever = new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                if (itemId == 30) {
+                    try {
+                        Thread.sleep(2000);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return price(itemId, shopId);
+            }
+        };
+        retriever.setBatchTimeout(200);
+        priceAggregator.setPriceRetriever(retriever);
+
+        long start = System.currentTimeMillis();
+        Map<Long, Double> minPrices = priceAggregator.getMinPrices(ITEMS);
+        long end = System.currentTimeMillis();
+
+        assertTrue(end - start < 1000, "Execution time: " + (end - start));
+        assertEquals(7.0, minPrices.get(10L));
+        assertEquals(17.0, minPrices.get(20L));
+        assertEquals(Double.NaN, minPrices.get(30L));
+    }
+
+    @Test
+    public void testSkipsFailedItems() {
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                if (itemId == 30) {
+                    throw new IllegalStateException("Item is not sold");
+                }
+                return price(itemId, shopId);
+            }
+        });
+
+        Map<Long, Double> minPrices = priceAggregator.getMinPrices(ITEMS);
+
+        assertEquals(7.0, minPrices.get(10L));
+        assertEquals(17.0, minPrices.get(20L));
+        assertEquals(Double.NaN, minPrices.get(30L));
+    }
+
+    @Test
+    public void testReturnsNaNWithoutPrices() {
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public Map<Long, Double> getPrices(Collection<Long> itemIds, long shopId) {
+                throw new IllegalStateException("Shop is down");
+            }
+        });
+
+        Map<Long, Double> minPrices = priceAggregator.getMinPrices(ITEMS);
+
+        assertEquals(ITEMS.size(), minPrices.size());
+        minPrices.values().forEach(price -> assertEquals(Double.NaN, price));
+    }
+
+    private static double price(long itemId, long shopId) {
+        return itemId - shopId;
+    }
+}
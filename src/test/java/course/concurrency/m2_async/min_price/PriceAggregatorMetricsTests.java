@@ -0,0 +1,130 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.CompletionPolicy;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceAggregatorMetrics;
+import course.concurrency.m2_async.cf.min_price.PriceAggregatorMetrics.ShopMetrics;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import course.concurrency.m2_async.cf.min_price.ShopLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PriceAggregatorMetricsTests {
+
+    private static final long FAILING_SHOP = 1L;
+    private static final long HANGING_SHOP = 5000L;
+
+    private PriceAggregator priceAggregator;
+    private PriceAggregatorMetrics metrics;
+
+    // shop id is its latency in milliseconds
+    @BeforeEach
+    public void setup() {
+        priceAggregator = new PriceAggregator();
+        metrics = priceAggregator.getMetrics();
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                if (shopId == FAILING_SHOP) {
+                    throw new IllegalStateException("Shop is down");
+                }
+                try {
+                    Thread.sleep(shopId);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return shopId;
+            }
+        });
+    }
+
+    @Test
+    public void testCountsOutcomesPerShop() {
+        priceAggregator.setShops(List.of(10L, FAILING_SHOP, HANGING_SHOP));
+
+        assertEquals(10, priceAggregator.getMinPrice(1));
+        awaitCount(3, () -> metrics.getSuccessCount() + metrics.getFailureCount() + metrics.getTimeoutCount());
+
+        ShopMetrics fast = metrics.getShopMetrics(10L);
+        assertEquals(1, fast.getSuccessCount());
+        assertTrue(fast.getP50Micros() >= 10_000, fast.toString());
+        assertEquals(1, metrics.getShopMetrics(FAILING_SHOP).getFailureCount());
+        assertEquals(1, metrics.getShopMetrics(HANGING_SHOP).getTimeoutCount());
+        assertEquals(3, metrics.getShopMetricsById().size());
+    }
+
+    @Test
+    public void testCountsDroppedAndRejected() {
+        priceAggregator.setShops(List.of(10L, 500L));
+        priceAggregator.setCompletionPolicy(CompletionPolicy.firstResponses(1));
+
+        assertEquals(10, priceAggregator.getMinPrice(1));
+        awaitCount(1, metrics::getDroppedCount);
+        assertEquals(1, metrics.getShopMetrics(500L).getDroppedCount());
+
+        priceAggregator.setShopLimiter(new ShopLimiter(1, 1, 1000, 1, 1000));
+        priceAggregator.setShops(Collections.nCopies(3, 10L));
+        priceAggregator.setCompletionPolicy(CompletionPolicy.all());
+
+        assertEquals(10, priceAggregator.getMinPrice(1));
+        assertEquals(2, metrics.getShopMetrics(10L).getRejectedCount());
+    }
+
+    @Test
+    public void testRecordsFanOuts() {
+        priceAggregator.setShops(List.of(10L, 20L));
+        priceAggregator.getMinPrice(1);
+        priceAggregator.setShops(List.of(FAILING_SHOP));
+        assertTrue(Double.isNaN(priceAggregator.getMinPrice(1)));
+
+        assertEquals(2, metrics.getFanOutCount());
+        assertEquals(1, metrics.getEmptyResultCount());
+        assertTrue(metrics.getFanOutP99Micros() >= 20_000);
+    }
+
+    @Test
+    public void testDisablesMetrics() {
+        priceAggregator.setMetrics(null);
+        priceAggregator.setShops(List.of(10L));
+
+        assertEquals(10, priceAggregator.getMinPrice(1));
+        assertEquals(0, metrics.getFanOutCount());
+    }
+
+    @Test
+    public void testExportsMBean() throws JMException {
+        priceAggregator.setShops(List.of(10L, FAILING_SHOP));
+        priceAggregator.getMinPrice(1);
+        awaitCount(2, () -> metrics.getSuccessCount() + metrics.getFailureCount());
+
+        ObjectName name = metrics.registerMBean("tests");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "FanOutCount"));
+            assertEquals(1L, server.getAttribute(name, "FailureCount"));
+            assertEquals(2, ((String[]) server.getAttribute(name, "ShopMetrics")).length);
+        } finally {
+            metrics.unregisterMBean("tests");
+        }
+    }
+
+    // outcomes are recorded right after the answer is handed to the caller
+    private static void awaitCount(long expected, LongSupplier count) {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (count.getAsLong() < expected) {
+            assertTrue(System.currentTimeMillis() < deadline, "Outcomes are not recorded");
+            Thread.onSpinWait();
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+}
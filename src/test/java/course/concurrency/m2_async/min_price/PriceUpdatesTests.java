@@ -0,0 +1,154 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import course.concurrency.m2_async.cf.min_price.PriceUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PriceUpdatesTests {
+
+    // shop id is its latency in milliseconds
+    private static final Map<Long, Double> PRICES = Map.of(100L, 50.0, 200L, 30.0, 300L, 40.0, 400L, 10.0);
+
+    private PriceAggregator priceAggregator;
+    private CountDownLatch started;
+    private CountDownLatch interrupted;
+
+    @BeforeEach
+    public void setup() {
+        priceAggregator = new PriceAggregator();
+        priceAggregator.setShops(PRICES.keySet());
+        started = new CountDownLatch(PRICES.size());
+        interrupted = new CountDownLatch(PRICES.size());
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                started.countDown();
+                try {
+                    Thread.sleep(shopId);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new IllegalStateException(e);
+                }
+                return PRICES.get(shopId);
+            }
+        });
+    }
+
+    @Test
+    public void testPublishesEveryNewMinimum() throws InterruptedException {
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        priceAggregator.getMinPriceUpdates(1).subscribe(subscriber);
+
+        assertTrue(subscriber.completed.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(50.0, 30.0, 10.0), subscriber.prices());
+        PriceUpdate last = subscriber.updates.get(2);
+        assertEquals(400L, last.getShopId());
+        assertEquals(4, last.getRespondedShops());
+        assertEquals(4, last.getShopCount());
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testConflatesUpdatesWithoutDemand() throws InterruptedException {
+        TestSubscriber subscriber = new TestSubscriber(1);
+        priceAggregator.getMinPriceUpdates(1).subscribe(subscriber);
+
+        Thread.sleep(600); // all shops have answered
+        assertEquals(List.of(50.0), subscriber.prices());
+        assertEquals(1, subscriber.completed.getCount()); // the last minimum is not delivered yet
+
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.completed.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of(50.0, 10.0), subscriber.prices());
+    }
+
+    @Test
+    public void testCancelCancelsRequests() throws InterruptedException {
+        priceAggregator.setShops(List.of(2000L, 2000L, 2000L, 2000L));
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        priceAggregator.getMinPriceUpdates(1).subscribe(subscriber);
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        subscriber.subscription.cancel();
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertTrue(subscriber.updates.isEmpty());
+        assertEquals(1, subscriber.completed.getCount());
+    }
+
+    @Test
+    public void testRejectsNonPositiveRequest() {
+        TestSubscriber subscriber = new TestSubscriber(0);
+        priceAggregator.getMinPriceUpdates(1).subscribe(subscriber);
+
+        assertEquals(PRICES.size(), started.getCount()); // failed in onSubscribe, no shop is asked
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(subscriber.updates.isEmpty());
+    }
+
+    @Test
+    public void testCompletesWithoutShopsAndDemand() {
+        priceAggregator.setShops(List.of());
+        TestSubscriber subscriber = new TestSubscriber(0) {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                // requests nothing
+            }
+        };
+        priceAggregator.getMinPriceUpdates(1).subscribe(subscriber);
+
+        assertEquals(0, subscriber.completed.getCount());
+        assertTrue(subscriber.updates.isEmpty());
+        assertNull(subscriber.error);
+    }
+
+    private static class TestSubscriber implements Flow.Subscriber<PriceUpdate> {
+
+        private final long initialRequest;
+        private final List<PriceUpdate> updates = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(PriceUpdate item) {
+            updates.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        List<Double> prices() {
+            return updates.stream().map(PriceUpdate::getMinPrice).collect(Collectors.toList());
+        }
+    }
+}
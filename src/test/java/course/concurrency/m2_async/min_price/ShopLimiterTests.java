@@ -0,0 +1,121 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import course.concurrency.m2_async.cf.min_price.ShopLimiter;
+import course.concurrency.m2_async.cf.min_price.ShopLimiter.BreakerState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShopLimiterTests {
+
+    private static final long FAILING_SHOP = 1L;
+    private static final long GOOD_SHOP = 2L;
+
+    private PriceAggregator priceAggregator;
+    private final AtomicInteger failingShopCalls = new AtomicInteger();
+    private volatile boolean failing = true;
+    private volatile long latencyMillis = 0;
+
+    @BeforeEach
+    public void setup() {
+        priceAggregator = new PriceAggregator();
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (shopId == FAILING_SHOP) {
+                    failingShopCalls.incrementAndGet();
+                    if (failing) {
+                        throw new IllegalStateException("Shop is down");
+                    }
+                }
+                return shopId;
+            }
+        });
+    }
+
+    @Test
+    public void testSkipsFailingShop() throws InterruptedException {
+        ShopLimiter limiter = new ShopLimiter(5, 10, 1000, 3, 200);
+        priceAggregator.setShopLimiter(limiter);
+        priceAggregator.setShops(List.of(FAILING_SHOP, GOOD_SHOP));
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(GOOD_SHOP, priceAggregator.getMinPrice(1));
+            awaitReleased(limiter, FAILING_SHOP);
+        }
+
+        assertEquals(3, failingShopCalls.get());
+        ShopLimiter.ShopStats stats = limiter.getShopStats(FAILING_SHOP);
+        assertEquals(BreakerState.OPEN, stats.getBreakerState());
+        assertEquals(3, stats.getFailureCount());
+        assertEquals(1, stats.getRejectedCount());
+        assertEquals(BreakerState.CLOSED, limiter.getShopStats(GOOD_SHOP).getBreakerState());
+
+        Thread.sleep(250);
+        failing = false;
+        assertEquals(FAILING_SHOP, priceAggregator.getMinPrice(1)); // probe
+        awaitReleased(limiter, FAILING_SHOP);
+
+        assertEquals(4, failingShopCalls.get());
+        assertEquals(BreakerState.CLOSED, limiter.getShopStats(FAILING_SHOP).getBreakerState());
+    }
+
+    @Test
+    public void testLimitsConcurrentRequestsToShop() {
+        ShopLimiter limiter = new ShopLimiter(2, 10, 1000, 3, 200);
+        priceAggregator.setShopLimiter(limiter);
+        priceAggregator.setShops(Collections.nCopies(10, GOOD_SHOP));
+        latencyMillis = 100;
+
+        assertEquals(GOOD_SHOP, priceAggregator.getMinPrice(1));
+
+        ShopLimiter.ShopStats stats = limiter.getShopStats(GOOD_SHOP);
+        assertEquals(8, stats.getRejectedCount());
+        assertEquals(0, stats.getFailureCount());
+    }
+
+    @Test
+    public void testAdaptsLimitToLatency() {
+        ShopLimiter limiter = new ShopLimiter(4, 10, 50, 3, 200);
+        priceAggregator.setShopLimiter(limiter);
+        priceAggregator.setShops(List.of(GOOD_SHOP));
+
+        for (int i = 0; i < 8; i++) {
+            priceAggregator.getMinPrice(1);
+            awaitReleased(limiter, GOOD_SHOP);
+        }
+        assertEquals(5, limiter.getShopStats(GOOD_SHOP).getLimit());
+
+        latencyMillis = 100;
+        priceAggregator.getMinPrice(1);
+        awaitReleased(limiter, GOOD_SHOP);
+        assertEquals(2, limiter.getShopStats(GOOD_SHOP).getLimit());
+    }
+
+    @Test
+    public void testRejectsIllegalConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new ShopLimiter(0, 10, 1000, 3, 200));
+        assertThrows(IllegalArgumentException.class, () -> new ShopLimiter(20, 10, 1000, 3, 200));
+    }
+
+    // the shop is released right after its answer is handed to the caller
+    private static void awaitReleased(ShopLimiter limiter, long shopId) {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (limiter.getShopStats(shopId).getInFlight() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Shop is not released");
+            Thread.onSpinWait();
+        }
+    }
+}